@@ -0,0 +1,30 @@
+package com.github.vevc.config;
+
+/**
+ * @author vevc
+ */
+public final class AppConfigFixture {
+
+    private AppConfigFixture() {
+    }
+
+    /**
+     * app config as it looks after install with both argo transports enabled
+     *
+     * @return app config
+     */
+    public static AppConfig create() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDomain("example.com");
+        appConfig.setPort("25565");
+        appConfig.setUuid("2584b733-9095-4bec-a7d5-62b473540f7a");
+        appConfig.setArgoTransport("ws,xhttp");
+        appConfig.setRealityPublicKey("Jk3bRYKrkUsMSS3ktqdOvA6UrS3CS2Q2dQbGbpWmTE0");
+        appConfig.setRealityPrivateKey("UHZ9aDmsj1dZ4Ae4FX3Sx9SSvfWQymPxX0T0yq8Gm1A");
+        appConfig.setRealityShortId("6ba85179");
+        appConfig.init();
+        appConfig.setArgoDomain("brave-otter-lake-sunrise.trycloudflare.com");
+        appConfig.setArgoXhttpDomain("quiet-river-maple-stone.trycloudflare.com");
+        return appConfig;
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.vevc.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * application.yml serialization as done by updateSpringConfig.
+ *
+ * @author vevc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplicationYamlVoBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
+    private AppConfig appConfig;
+
+    @Setup
+    public void setup() {
+        appConfig = AppConfigFixture.create();
+    }
+
+    @Benchmark
+    public String serialize() throws Exception {
+        ApplicationYamlVo applicationYamlVo = new ApplicationYamlVo();
+        applicationYamlVo.setAppConfig(appConfig);
+        return objectMapper.writeValueAsString(applicationYamlVo);
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.vevc.service;
+
+import com.github.vevc.config.AppConfigFixture;
+import com.github.vevc.service.impl.XrayServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The supervisor line-drain loop over a high volume of process output.
+ *
+ * @author vevc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StartProcessDrainBenchmark {
+
+    private static final String LINE = "2025/10/19 08:12:05.123456 [Info] [1234567890] proxy/vless/inbound: "
+            + "firstLen = 1448 from tcp:203.0.113.7:51234 accepted tcp:www.example.com:443 [raw-reality -> direct]\n";
+
+    @Param({"10000", "100000"})
+    private int lines;
+
+    private AbstractAppService service;
+    private byte[] output;
+
+    @Setup
+    public void setup() {
+        service = new XrayServiceImpl(AppConfigFixture.create());
+        output = LINE.repeat(lines).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void drainOutput() throws Exception {
+        service.drainOutput(new ByteArrayInputStream(output));
+    }
+}
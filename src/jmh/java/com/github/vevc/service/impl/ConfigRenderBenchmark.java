@@ -0,0 +1,50 @@
+package com.github.vevc.service.impl;
+
+import com.github.vevc.config.AppConfig;
+import com.github.vevc.config.AppConfigFixture;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Config template rendering as in downloadConfig, run from the project root to pick up the templates.
+ *
+ * @author vevc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigRenderBenchmark {
+
+    private XrayServiceImpl xrayService;
+    private Hy2ServiceImpl hy2Service;
+    private String xrayTemplate;
+    private String hy2Template;
+    private File configPath;
+
+    @Setup
+    public void setup() throws Exception {
+        AppConfig appConfig = AppConfigFixture.create();
+        xrayService = new XrayServiceImpl(appConfig);
+        hy2Service = new Hy2ServiceImpl(appConfig);
+        xrayTemplate = Files.readString(Paths.get("xray-config.json"));
+        hy2Template = Files.readString(Paths.get("hysteria-config.yaml"));
+        configPath = new File("bin", "h2");
+    }
+
+    @Benchmark
+    public String xray() throws Exception {
+        return xrayService.renderConfig(xrayTemplate);
+    }
+
+    @Benchmark
+    public String hy2() {
+        return hy2Service.renderConfig(hy2Template, configPath);
+    }
+}
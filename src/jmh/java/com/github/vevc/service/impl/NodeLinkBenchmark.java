@@ -0,0 +1,34 @@
+package com.github.vevc.service.impl;
+
+import com.github.vevc.config.AppConfigFixture;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node link generation as in updateSubFile, without the file write.
+ *
+ * @author vevc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeLinkBenchmark {
+
+    private ArgoServiceImpl argoService;
+
+    @Setup
+    public void setup() {
+        argoService = new ArgoServiceImpl(AppConfigFixture.create(), new SyncTaskExecutor());
+    }
+
+    @Benchmark
+    public List<String> buildSubInfoList() {
+        return argoService.buildSubInfoList();
+    }
+}
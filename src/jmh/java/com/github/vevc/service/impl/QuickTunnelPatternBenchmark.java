@@ -0,0 +1,45 @@
+package com.github.vevc.service.impl;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QUICK_TUNNEL_HOST_PATTERN matching over a cloudflared quick tunnel startup log.
+ *
+ * @author vevc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuickTunnelPatternBenchmark {
+
+    private static final String[] LOG_LINES = {
+            "2025-10-19T08:12:01Z INF Thank you for trying Cloudflare Tunnel. Doing so, without a Cloudflare account, is a quick way to experiment and try it out. However, be aware that these account-less Tunnels have no uptime guarantee, are subject to the Cloudflare Online Services Terms of Use (https://www.cloudflare.com/website-terms/), and Cloudflare reserves the right to investigate your use of Tunnels for violations of such terms. If you intend to use Tunnels in production you should use a pre-created named tunnel by following: https://developers.cloudflare.com/cloudflare-one/connections/connect-networks",
+            "2025-10-19T08:12:01Z INF Requesting new quick Tunnel on trycloudflare.com...",
+            "2025-10-19T08:12:04Z INF +--------------------------------------------------------------------------------------------+",
+            "2025-10-19T08:12:04Z INF |  Your quick Tunnel has been created! Visit it at (it may take some time to be reachable):  |",
+            "2025-10-19T08:12:04Z INF |  https://brave-otter-lake-sunrise.trycloudflare.com                                         |",
+            "2025-10-19T08:12:04Z INF +--------------------------------------------------------------------------------------------+",
+            "2025-10-19T08:12:04Z INF Cannot determine default configuration path. No file [config.yml config.yaml] in [~/.cloudflared ~/.cloudflare-warp ~/cloudflare-warp /etc/cloudflared /usr/local/etc/cloudflared]",
+            "2025-10-19T08:12:04Z INF Version 2025.10.0 (Checksum 3b1f0c2a9d)",
+            "2025-10-19T08:12:04Z INF GOOS: linux, GOVersion: go1.24.4, GoArch: amd64",
+            "2025-10-19T08:12:04Z INF Settings: map[edge-ip-version:auto ha-connections:1 metrics:127.0.0.1:20241 no-autoupdate:true protocol:http2 url:http://localhost:8001]",
+            "2025-10-19T08:12:04Z INF Generated Connector ID: 4e0b5c1a-7f0e-4a51-9d9a-1a2b3c4d5e6f",
+            "2025-10-19T08:12:04Z INF Initial protocol http2",
+            "2025-10-19T08:12:04Z INF ICMP proxy will use 10.0.0.5 as source for IPv4",
+            "2025-10-19T08:12:04Z INF Starting metrics server on 127.0.0.1:20241/metrics",
+            "2025-10-19T08:12:05Z INF Registered tunnel connection connIndex=0 connection=5c6a1d3e-2b4f-4c8d-9e0a-1b2c3d4e5f60 event=0 ip=198.41.200.23 location=sjc08 protocol=http2",
+    };
+
+    @Benchmark
+    public void matchStartupLog(Blackhole blackhole) {
+        for (String line : LOG_LINES) {
+            blackhole.consume(ArgoServiceImpl.findQuickTunnelUrl(line));
+        }
+    }
+}
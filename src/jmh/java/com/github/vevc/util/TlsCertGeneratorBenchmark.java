@@ -0,0 +1,42 @@
+package com.github.vevc.util;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Self-signed certificate generation for each supported RSA key size.
+ *
+ * @author vevc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TlsCertGeneratorBenchmark {
+
+    @Param({"2048", "3072", "4096"})
+    private int keySize;
+
+    private File certPath;
+
+    @Setup
+    public void setup() throws Exception {
+        certPath = Files.createTempDirectory("tls-cert-bench").toFile();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(certPath);
+    }
+
+    @Benchmark
+    public void generate() throws Exception {
+        TlsCertGenerator.generate("example.com", 3650, keySize, certPath);
+    }
+}
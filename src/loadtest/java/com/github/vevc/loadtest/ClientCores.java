@@ -0,0 +1,151 @@
+package com.github.vevc.loadtest;
+
+import com.github.vevc.config.AppConfig;
+import com.github.vevc.util.ListenProbe;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the installed Xray and Hysteria2 binaries a second time as clients, each
+ * protocol behind its own local SOCKS5 port.
+ *
+ * @author vevc
+ */
+public class ClientCores implements AutoCloseable {
+
+    public static final int WS_SOCKS_PORT = 11080;
+    public static final int REALITY_SOCKS_PORT = 11081;
+    public static final int HY2_SOCKS_PORT = 11082;
+
+    private static final String XRAY_CLIENT_CONFIG = """
+            {
+              "log": {"loglevel": "warning"},
+              "inbounds": [
+                {"tag": "ws", "listen": "127.0.0.1", "port": %1$d, "protocol": "socks", "settings": {"udp": false}},
+                {"tag": "reality", "listen": "127.0.0.1", "port": %2$d, "protocol": "socks", "settings": {"udp": false}}
+              ],
+              "outbounds": [
+                {
+                  "tag": "ws-out",
+                  "protocol": "vless",
+                  "settings": {"vnext": [{"address": "127.0.0.1", "port": 8001,
+                    "users": [{"id": "%3$s", "encryption": "none"}]}]},
+                  "streamSettings": {"network": "ws", "security": "none", "wsSettings": {"path": "/"}}
+                },
+                {
+                  "tag": "reality-out",
+                  "protocol": "vless",
+                  "settings": {"vnext": [{"address": "127.0.0.1", "port": %4$s,
+                    "users": [{"id": "%3$s", "encryption": "none", "flow": "xtls-rprx-vision"}]}]},
+                  "streamSettings": {"network": "raw", "security": "reality", "realitySettings": {
+                    "serverName": "www.cloudflare.com", "fingerprint": "chrome",
+                    "publicKey": "%5$s", "shortId": "%6$s"}}
+                }
+              ],
+              "routing": {"rules": [
+                {"inboundTag": ["ws"], "outboundTag": "ws-out"},
+                {"inboundTag": ["reality"], "outboundTag": "reality-out"}
+              ]}
+            }
+            """;
+
+    private static final String HY2_CLIENT_CONFIG = """
+            server: 127.0.0.1:%1$s
+            auth: '%2$s'
+            tls:
+              insecure: true
+            socks5:
+              listen: 127.0.0.1:%3$d
+            """;
+
+    private final List<Process> processes = new ArrayList<>();
+
+    /**
+     * start the client cores and wait for their SOCKS5 ports
+     *
+     * @param workDir    directory for client configs and logs
+     * @param xrayBinary installed xray binary
+     * @param hy2Binary  installed hysteria2 binary
+     * @param appConfig  server side config
+     * @param tuning     client side overrides
+     * @return client cores
+     * @throws Exception e
+     */
+    public static ClientCores start(File workDir, File xrayBinary, File hy2Binary, AppConfig appConfig,
+                                    Tuning tuning) throws Exception {
+        ClientCores cores = new ClientCores();
+        try {
+            File clientDir = new File(workDir, "client");
+            FileUtils.forceMkdir(clientDir);
+
+            File xrayConfig = new File(clientDir, "xray-client.json");
+            String xrayText = String.format(XRAY_CLIENT_CONFIG, WS_SOCKS_PORT, REALITY_SOCKS_PORT,
+                    appConfig.getUuid(), appConfig.getPort(), appConfig.getRealityPublicKey(),
+                    appConfig.getRealityShortId());
+            FileUtils.writeStringToFile(xrayConfig, Tuning.apply(xrayText, tuning.xrayClient(), Tuning.JSON),
+                    StandardCharsets.UTF_8);
+            cores.spawn(new File(clientDir, "xray-client.log"), xrayBinary.getAbsolutePath(),
+                    "run", "-c", xrayConfig.getAbsolutePath());
+
+            File hy2Config = new File(clientDir, "hy2-client.yaml");
+            String hy2Text = String.format(HY2_CLIENT_CONFIG, appConfig.getPort(), appConfig.getUuid(),
+                    HY2_SOCKS_PORT);
+            FileUtils.writeStringToFile(hy2Config, Tuning.apply(hy2Text, tuning.hy2Client(), Tuning.YAML),
+                    StandardCharsets.UTF_8);
+            cores.spawn(new File(clientDir, "hy2-client.log"), hy2Binary.getAbsolutePath(),
+                    "client", "-c", hy2Config.getAbsolutePath());
+
+            for (int port : new int[]{WS_SOCKS_PORT, REALITY_SOCKS_PORT, HY2_SOCKS_PORT}) {
+                cores.awaitListening(port);
+            }
+            return cores;
+        } catch (Exception e) {
+            cores.close();
+            throw e;
+        }
+    }
+
+    public static Proxy socks(int port) {
+        return new Proxy(Proxy.Type.SOCKS, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    private void spawn(File logFile, String... command) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(logFile);
+        processes.add(pb.start());
+    }
+
+    private void awaitListening(int port) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!ListenProbe.isTcpListening(port)) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Client core SOCKS5 port " + port + " not listening");
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Process process : processes) {
+            process.destroy();
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.vevc.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loopback target for the load test: an echo port for latency and a sink port for throughput.
+ * The sink reads until EOF and answers a single byte so the client can stop its clock.
+ *
+ * @author vevc
+ */
+@Slf4j
+public class EchoSinkServer implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ServerSocket echoSocket;
+    private final ServerSocket sinkSocket;
+    private final ExecutorService executor;
+
+    private EchoSinkServer() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        this.echoSocket = new ServerSocket(0, 128, loopback);
+        this.sinkSocket = new ServerSocket(0, 128, loopback);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "echo-sink");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static EchoSinkServer start() throws IOException {
+        EchoSinkServer server = new EchoSinkServer();
+        server.executor.execute(() -> server.accept(server.echoSocket, true));
+        server.executor.execute(() -> server.accept(server.sinkSocket, false));
+        log.info("Echo server on {}, sink server on {}", server.getEchoAddress(), server.getSinkAddress());
+        return server;
+    }
+
+    public InetSocketAddress getEchoAddress() {
+        return new InetSocketAddress(echoSocket.getInetAddress(), echoSocket.getLocalPort());
+    }
+
+    public InetSocketAddress getSinkAddress() {
+        return new InetSocketAddress(sinkSocket.getInetAddress(), sinkSocket.getLocalPort());
+    }
+
+    private void accept(ServerSocket serverSocket, boolean echo) {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(() -> this.serve(socket, echo));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket, boolean echo) {
+        try (socket;
+             InputStream in = socket.getInputStream();
+             OutputStream out = socket.getOutputStream()) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (echo) {
+                    out.write(buffer, 0, read);
+                    out.flush();
+                }
+            }
+            if (!echo) {
+                out.write(1);
+                out.flush();
+            }
+        } catch (IOException e) {
+            log.debug("Connection closed", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        echoSocket.close();
+        sinkSocket.close();
+        executor.shutdownNow();
+    }
+}
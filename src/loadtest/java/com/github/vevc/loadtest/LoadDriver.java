@@ -0,0 +1,159 @@
+package com.github.vevc.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Pushes a {@link LoadProfile} through a SOCKS5 proxy, or directly, to the echo/sink server.
+ *
+ * @author vevc
+ */
+@Slf4j
+public class LoadDriver {
+
+    private static final int SOCKET_TIMEOUT_MILLIS = 30_000;
+
+    private final EchoSinkServer server;
+
+    public LoadDriver(EchoSinkServer server) {
+        this.server = server;
+    }
+
+    /**
+     * run one profile
+     *
+     * @param protocol protocol label
+     * @param proxy    SOCKS5 proxy of the client core, or {@link Proxy#NO_PROXY}
+     * @param profile  workload
+     * @return result
+     * @throws Exception e
+     */
+    public LoadResult run(String protocol, Proxy proxy, LoadProfile profile) throws Exception {
+        log.info("Running {} / {}", protocol, profile.name());
+        InetSocketAddress target = profile.isUpload() ? server.getSinkAddress() : server.getEchoAddress();
+        ExecutorService executor = Executors.newFixedThreadPool(profile.workers());
+        List<Future<Worker>> futures = new ArrayList<>();
+        long begin = System.nanoTime();
+        try {
+            for (int i = 0; i < profile.workers(); i++) {
+                futures.add(executor.submit(() -> new Worker(profile).run(proxy, target)));
+            }
+            long bytes = 0;
+            int failures = 0;
+            List<long[]> setups = new ArrayList<>();
+            List<long[]> roundTrips = new ArrayList<>();
+            for (Future<Worker> future : futures) {
+                Worker worker = future.get();
+                bytes += worker.bytes;
+                failures += worker.failures;
+                setups.add(Arrays.copyOf(worker.setupNanos, worker.setupCount));
+                roundTrips.add(Arrays.copyOf(worker.roundTripNanos, worker.roundTripCount));
+            }
+            long elapsed = System.nanoTime() - begin;
+            return new LoadResult(protocol, profile.name(), bytes, elapsed, concat(setups), concat(roundTrips), failures);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long[] concat(List<long[]> arrays) {
+        long[] result = new long[arrays.stream().mapToInt(array -> array.length).sum()];
+        int offset = 0;
+        for (long[] array : arrays) {
+            System.arraycopy(array, 0, result, offset, array.length);
+            offset += array.length;
+        }
+        return result;
+    }
+
+    private static class Worker {
+        private final LoadProfile profile;
+        private final long[] setupNanos;
+        private final long[] roundTripNanos;
+        private int failures;
+        private int setupCount;
+        private int roundTripCount;
+        private long bytes;
+
+        private Worker(LoadProfile profile) {
+            this.profile = profile;
+            this.setupNanos = new long[profile.connectionsPerWorker()];
+            this.roundTripNanos = new long[profile.connectionsPerWorker() * Math.max(0, profile.roundTrips() - 1)];
+        }
+
+        private Worker run(Proxy proxy, InetSocketAddress target) {
+            for (int i = 0; i < profile.connectionsPerWorker(); i++) {
+                try (Socket socket = new Socket(proxy)) {
+                    socket.setTcpNoDelay(true);
+                    socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+                    long start = System.nanoTime();
+                    socket.connect(target, SOCKET_TIMEOUT_MILLIS);
+                    if (profile.isUpload()) {
+                        this.upload(socket);
+                    } else {
+                        this.echo(socket, start);
+                    }
+                } catch (IOException e) {
+                    failures++;
+                    log.debug("Connection failed", e);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * setup time ends with the first echoed message, because a SOCKS5 core may
+         * acknowledge CONNECT before its outbound is established
+         */
+        private void echo(Socket socket, long start) throws IOException {
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] message = new byte[profile.messageSize()];
+            for (int i = 0; i < profile.roundTrips(); i++) {
+                long sent = System.nanoTime();
+                out.write(message);
+                out.flush();
+                in.readFully(message);
+                long received = System.nanoTime();
+                if (i == 0) {
+                    setupNanos[setupCount++] = received - start;
+                } else {
+                    roundTripNanos[roundTripCount++] = received - sent;
+                }
+                bytes += 2L * message.length;
+            }
+        }
+
+        /**
+         * the upload ends with the sink acknowledging EOF, buffered writes say nothing
+         * about setup time so none is recorded
+         */
+        private void upload(Socket socket) throws IOException {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] chunk = new byte[profile.messageSize()];
+            long remaining = profile.uploadBytes();
+            while (remaining > 0) {
+                int length = (int) Math.min(chunk.length, remaining);
+                out.write(chunk, 0, length);
+                remaining -= length;
+            }
+            socket.shutdownOutput();
+            if (in.read() != 1) {
+                throw new IOException("Sink did not acknowledge the upload");
+            }
+            bytes += profile.uploadBytes();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.vevc.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Workload shape of one load test run.
+ *
+ * @param name                 profile name
+ * @param workers              parallel workers
+ * @param connectionsPerWorker connections opened one after another by each worker
+ * @param roundTrips           echo round trips per connection, 0 for an upload
+ * @param messageSize          bytes per round trip or per upload write
+ * @param uploadBytes          bytes uploaded per connection, 0 for an echo run
+ * @author vevc
+ */
+public record LoadProfile(String name, int workers, int connectionsPerWorker, int roundTrips,
+                          int messageSize, long uploadBytes) {
+
+    /**
+     * long-lived connections exchanging small messages: latency percentiles
+     */
+    public static final LoadProfile LATENCY = new LoadProfile("latency", 8, 1, 2000, 64, 0);
+
+    /**
+     * a few large uploads: throughput
+     */
+    public static final LoadProfile BULK = new LoadProfile("bulk", 4, 1, 0, 64 * 1024, 64L * 1024 * 1024);
+
+    /**
+     * many short-lived connections: connection setup time under concurrency
+     */
+    public static final LoadProfile CHURN = new LoadProfile("churn", 16, 50, 1, 64, 0);
+
+    public boolean isUpload() {
+        return uploadBytes > 0;
+    }
+
+    /**
+     * parse a comma separated list of profile names
+     *
+     * @param names profile names
+     * @return profiles
+     */
+    public static List<LoadProfile> parse(String names) {
+        List<LoadProfile> profiles = new ArrayList<>();
+        for (String name : names.split(",")) {
+            switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "latency" -> profiles.add(LATENCY);
+                case "bulk" -> profiles.add(BULK);
+                case "churn" -> profiles.add(CHURN);
+                default -> throw new IllegalArgumentException("Unknown load profile: " + name);
+            }
+        }
+        return profiles;
+    }
+}
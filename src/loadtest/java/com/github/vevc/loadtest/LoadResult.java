@@ -0,0 +1,43 @@
+package com.github.vevc.loadtest;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measurements of one protocol/profile run.
+ *
+ * @author vevc
+ */
+public record LoadResult(String protocol, String profile, long bytes, long elapsedNanos,
+                         long[] setupNanos, long[] roundTripNanos, int failures) {
+
+    public static final String TABLE_HEADER = "| protocol | profile | throughput MiB/s | setup p50 ms | setup p99 ms "
+            + "| rtt p50 us | rtt p99 us | rtt p999 us | failures |\n"
+            + "|---|---|---:|---:|---:|---:|---:|---:|---:|";
+
+    public double throughputMibPerSecond() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return bytes / (1024.0 * 1024.0) / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public String toTableRow() {
+        Arrays.sort(setupNanos);
+        Arrays.sort(roundTripNanos);
+        return String.format(Locale.ROOT, "| %s | %s | %.1f | %s | %s | %s | %s | %s | %d |",
+                protocol, profile, throughputMibPerSecond(),
+                format(setupNanos, 0.50, TimeUnit.MILLISECONDS), format(setupNanos, 0.99, TimeUnit.MILLISECONDS),
+                format(roundTripNanos, 0.50, TimeUnit.MICROSECONDS), format(roundTripNanos, 0.99, TimeUnit.MICROSECONDS),
+                format(roundTripNanos, 0.999, TimeUnit.MICROSECONDS), failures);
+    }
+
+    private static String format(long[] sorted, double quantile, TimeUnit unit) {
+        if (sorted.length == 0) {
+            return "-";
+        }
+        int index = Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1);
+        return String.format(Locale.ROOT, "%.2f", sorted[index] / (double) unit.toNanos(1));
+    }
+}
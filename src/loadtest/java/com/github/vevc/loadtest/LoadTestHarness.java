@@ -0,0 +1,203 @@
+package com.github.vevc.loadtest;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.github.vevc.config.AppConfig;
+import com.github.vevc.config.ApplicationYamlVo;
+import com.github.vevc.service.AbstractAppService;
+import com.github.vevc.service.impl.Hy2ServiceImpl;
+import com.github.vevc.service.impl.XrayServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Boots Xray and Hysteria2 through the regular services in the working directory, without
+ * cloudflared (the ws client dials 8001 directly), and measures every protocol against a
+ * loopback echo/sink server.
+ * <p>
+ * Run with {@code mvn -Ploadtest test-compile exec:exec@loadtest}. The first run installs the
+ * cores into target/loadtest and needs network access, later runs reuse them. The server configs
+ * are rendered again on every run from the templates of this checkout ({@code -Dapp.template-dir})
+ * and the overrides of {@code -Dloadtest.tuning} are merged into server and client configs.
+ *
+ * @author vevc
+ */
+@Slf4j
+public class LoadTestHarness {
+
+    private static final String DIRECT = "direct";
+    private static final String NONE_TUNING = Tuning.NONE.name();
+    private static final Map<String, Integer> SOCKS_PORTS = Map.of(
+            "ws", ClientCores.WS_SOCKS_PORT,
+            "reality", ClientCores.REALITY_SOCKS_PORT,
+            "hy2", ClientCores.HY2_SOCKS_PORT);
+
+    public static void main(String[] args) throws Exception {
+        Tuning tuning = Tuning.load(System.getProperty("loadtest.tuning"));
+        String label = System.getProperty("loadtest.label", "");
+        if (label.isBlank()) {
+            label = NONE_TUNING.equals(tuning.name()) ? "default" : tuning.name();
+        }
+        List<String> protocols = Arrays.asList(System.getProperty("loadtest.protocols", "direct,ws,reality,hy2")
+                .split(","));
+        List<LoadProfile> profiles = LoadProfile.parse(System.getProperty("loadtest.profiles", "latency,churn,bulk"));
+        File workDir = new File(System.getProperty("user.dir"));
+
+        List<LoadResult> results = new ArrayList<>();
+        Map<String, String> coreVersions = new LinkedHashMap<>();
+        try (EchoSinkServer server = EchoSinkServer.start()) {
+            LoadDriver driver = new LoadDriver(server);
+            if (protocols.contains(DIRECT)) {
+                run(driver, DIRECT, Proxy.NO_PROXY, profiles, results);
+            }
+            if (protocols.stream().anyMatch(SOCKS_PORTS::containsKey)) {
+                AppConfig appConfig = loadAppConfig(workDir);
+                coreVersions = startCores(workDir, appConfig, tuning);
+                try (ClientCores ignored = ClientCores.start(workDir, new File(workDir, "bin/xy/xy"),
+                        new File(workDir, "bin/h2/h2"), appConfig, tuning)) {
+                    for (String protocol : protocols) {
+                        if (SOCKS_PORTS.containsKey(protocol)) {
+                            run(driver, protocol, ClientCores.socks(SOCKS_PORTS.get(protocol)), profiles, results);
+                        }
+                    }
+                }
+            }
+        } finally {
+            // the server cores are restarted by their supervisor loops, only the JVM exit ends them
+            ProcessHandle.current().descendants().forEach(ProcessHandle::destroy);
+        }
+        writeReport(workDir, label, tuning, coreVersions, results);
+    }
+
+    private static void run(LoadDriver driver, String protocol, Proxy proxy, List<LoadProfile> profiles,
+                            List<LoadResult> results) throws Exception {
+        for (LoadProfile profile : profiles) {
+            results.add(driver.run(protocol, proxy, profile));
+        }
+    }
+
+    private static AppConfig loadAppConfig(File workDir) throws Exception {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDomain("example.com");
+        appConfig.setPort(System.getProperty("loadtest.port", "10443"));
+        File springConfig = new File(workDir, "application.yml");
+        if (springConfig.exists()) {
+            // keep uuid and reality keys of the cores installed by an earlier run
+            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory())
+                    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            ApplicationYamlVo.AppConfigVo saved = objectMapper.readValue(springConfig, ApplicationYamlVo.class).getApp();
+            appConfig.setPort(saved.getPort());
+            appConfig.setUuid(saved.getUuid());
+            appConfig.setXrayVersion(saved.getXrayVersion());
+            appConfig.setHy2Version(saved.getHy2Version());
+            appConfig.setRealityPublicKey(saved.getRealityPublicKey());
+            appConfig.setRealityPrivateKey(saved.getRealityPrivateKey());
+            appConfig.setRealityShortId(saved.getRealityShortId());
+        }
+        appConfig.init();
+        return appConfig;
+    }
+
+    /**
+     * install and start the server cores, switching installed binaries to the configured versions
+     *
+     * @return versions the cores run, by core
+     */
+    private static Map<String, String> startCores(File workDir, AppConfig appConfig, Tuning tuning)
+            throws Exception {
+        XrayServiceImpl xrayService = new XrayServiceImpl(appConfig);
+        Hy2ServiceImpl hy2Service = new Hy2ServiceImpl(appConfig);
+        xrayService.install();
+        hy2Service.install();
+        // an earlier run may have installed other templates or overrides
+        xrayService.updateConfig();
+        hy2Service.updateConfig();
+        Tuning.apply(new File(workDir, "bin/xy/config.json"), tuning.xrayServer(), Tuning.JSON);
+        Tuning.apply(new File(workDir, "bin/h2/config.yaml"), tuning.hy2Server(), Tuning.YAML);
+        // install() keeps the binaries of an earlier run, a changed version is switched before the start
+        List<AbstractAppService> upgraded = new ArrayList<>();
+        for (AbstractAppService service : List.of(xrayService, hy2Service)) {
+            if (service.isUpgradePending()) {
+                service.upgradeBeforeStartup();
+                upgraded.add(service);
+            }
+        }
+
+        // outside Spring there is no @Async proxy, the supervisor loops get their own threads
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "core-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(() -> supervise(xrayService::startup));
+        executor.execute(() -> supervise(hy2Service::startup));
+        awaitReady("Xray", xrayService::isReady);
+        awaitReady("Hy2", hy2Service::isReady);
+        for (AbstractAppService service : upgraded) {
+            if (!service.confirmUpgrade()) {
+                throw new IllegalStateException(service.getClass().getSimpleName() + " " + service.getInstalledVersion()
+                        + " kept, the configured version did not become ready");
+            }
+        }
+
+        Map<String, String> versions = new LinkedHashMap<>();
+        versions.put("xray", xrayService.getInstalledVersion());
+        versions.put("hy2", hy2Service.getInstalledVersion());
+        return versions;
+    }
+
+    private static void supervise(Startup startup) {
+        try {
+            startup.run();
+        } catch (Exception e) {
+            log.error("Core supervisor failed", e);
+        }
+    }
+
+    private static void awaitReady(String name, BooleanSupplier ready) throws Exception {
+        long begin = System.nanoTime();
+        long deadline = begin + TimeUnit.SECONDS.toNanos(30);
+        while (!ready.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(name + " not ready");
+            }
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        log.info("{} ready in {} ms", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+    }
+
+    private static void writeReport(File workDir, String label, Tuning tuning, Map<String, String> coreVersions,
+                                    List<LoadResult> results) throws Exception {
+        StringBuilder report = new StringBuilder();
+        report.append("# Load test: ").append(label).append('\n').append('\n');
+        report.append("- date: ").append(LocalDateTime.now()).append('\n');
+        for (Map.Entry<String, String> version : coreVersions.entrySet()) {
+            report.append("- ").append(version.getKey()).append(": ").append(version.getValue()).append('\n');
+        }
+        report.append("- tuning: ").append(tuning.name()).append('\n');
+        report.append("- java: ").append(System.getProperty("java.version")).append('\n').append('\n');
+        report.append(LoadResult.TABLE_HEADER).append('\n');
+        for (LoadResult result : results) {
+            report.append(result.toTableRow()).append('\n');
+        }
+        File reportFile = new File(workDir, "loadtest-report-" + label + ".md");
+        Files.writeString(reportFile.toPath(), report, StandardCharsets.UTF_8);
+        log.info("Load test report written to {}\n{}", reportFile, report);
+    }
+
+    @FunctionalInterface
+    private interface Startup {
+        void run() throws Exception;
+    }
+}
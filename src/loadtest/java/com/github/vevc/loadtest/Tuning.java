@@ -0,0 +1,135 @@
+package com.github.vevc.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Core tuning profile of one load test run: optional overrides that are merged into the
+ * rendered server and client configs. A profile is a directory, or a classpath folder under
+ * tuning/, holding any of xray-server.json, xray-client.json, hy2-server.yaml and hy2-client.yaml.
+ * <p>
+ * Objects are merged recursively, a null value removes the key, array elements are merged by
+ * index (so {@code inbounds[1]} of the override patches the reality inbound of the template)
+ * and any other value replaces the rendered one.
+ *
+ * @param name       profile name
+ * @param xrayServer override of the xray server config
+ * @param xrayClient override of the xray client config
+ * @param hy2Server  override of the hysteria2 server config
+ * @param hy2Client  override of the hysteria2 client config
+ * @author vevc
+ */
+public record Tuning(String name, JsonNode xrayServer, JsonNode xrayClient, JsonNode hy2Server, JsonNode hy2Client) {
+
+    public static final ObjectMapper JSON = new ObjectMapper();
+    public static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    /**
+     * the configs exactly as rendered from the templates
+     */
+    public static final Tuning NONE = new Tuning("none", null, null, null, null);
+
+    /**
+     * load a tuning profile by classpath name or directory
+     *
+     * @param nameOrPath profile name under tuning/ or a directory
+     * @return tuning
+     * @throws IOException e
+     */
+    public static Tuning load(String nameOrPath) throws IOException {
+        if (nameOrPath == null || nameOrPath.isBlank() || NONE.name().equals(nameOrPath)) {
+            return NONE;
+        }
+        File dir = new File(nameOrPath);
+        String name = dir.isDirectory() ? dir.getName() : nameOrPath;
+        Tuning tuning = new Tuning(name, read(dir, nameOrPath, "xray-server.json", JSON),
+                read(dir, nameOrPath, "xray-client.json", JSON), read(dir, nameOrPath, "hy2-server.yaml", YAML),
+                read(dir, nameOrPath, "hy2-client.yaml", YAML));
+        if (tuning.xrayServer == null && tuning.xrayClient == null && tuning.hy2Server == null
+                && tuning.hy2Client == null) {
+            throw new IllegalArgumentException("No tuning overrides found for " + nameOrPath);
+        }
+        return tuning;
+    }
+
+    private static JsonNode read(File dir, String name, String fileName, ObjectMapper mapper) throws IOException {
+        if (dir.isDirectory()) {
+            File file = new File(dir, fileName);
+            return file.exists() ? mapper.readTree(file) : null;
+        }
+        try (InputStream in = Tuning.class.getClassLoader().getResourceAsStream("tuning/" + name + "/" + fileName)) {
+            return in == null ? null : mapper.readTree(in);
+        }
+    }
+
+    /**
+     * apply an override to a rendered config
+     *
+     * @param config rendered config text
+     * @param patch  override, null to keep the config as it is
+     * @param mapper JSON or YAML mapper of the config format
+     * @return config text
+     * @throws IOException e
+     */
+    public static String apply(String config, JsonNode patch, ObjectMapper mapper) throws IOException {
+        if (patch == null) {
+            return config;
+        }
+        JsonNode merged = merge(mapper.readTree(config), patch);
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(merged);
+    }
+
+    /**
+     * apply an override to a rendered config file in place
+     *
+     * @param file   rendered config
+     * @param patch  override, null to keep the file as it is
+     * @param mapper JSON or YAML mapper of the config format
+     * @throws IOException e
+     */
+    public static void apply(File file, JsonNode patch, ObjectMapper mapper) throws IOException {
+        if (patch != null) {
+            String config = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+            Files.writeString(file.toPath(), apply(config, patch, mapper), StandardCharsets.UTF_8);
+        }
+    }
+
+    static JsonNode merge(JsonNode target, JsonNode patch) {
+        if (target instanceof ObjectNode object && patch.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (field.getValue().isNull()) {
+                    object.remove(field.getKey());
+                } else if (object.has(field.getKey())) {
+                    object.set(field.getKey(), merge(object.get(field.getKey()), field.getValue()));
+                } else {
+                    object.set(field.getKey(), field.getValue());
+                }
+            }
+            return object;
+        }
+        if (target instanceof ArrayNode array && patch.isArray()) {
+            for (int i = 0; i < patch.size(); i++) {
+                if (i < array.size()) {
+                    array.set(i, merge(array.get(i), patch.get(i)));
+                } else {
+                    array.add(patch.get(i));
+                }
+            }
+            return array;
+        }
+        return patch;
+    }
+}
@@ -1,6 +1,8 @@
 package com.github.vevc;
 
+import com.github.vevc.config.AppConfig;
 import com.github.vevc.service.AppService;
+import com.github.vevc.service.ControlServer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
@@ -14,12 +16,24 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class AppRunner implements CommandLineRunner {
 
+    private final AppConfig appConfig;
     private final AppService appService;
+    private final ControlServer controlServer;
 
     @Override
     public void run(String... args) throws Exception {
         appService.install();
+        try {
+            controlServer.start();
+        } catch (Exception e) {
+            // the control socket is optional, the apps must come up without it
+            log.warn("Control socket unavailable, ctl commands will not work", e);
+        }
         appService.startup();
+        if (!appConfig.isShellEnabled()) {
+            log.info("Shell disabled, control the apps with: java -jar java-xah.jar ctl help");
+            return;
+        }
         ProcessBuilder pb = new ProcessBuilder("bash");
         pb.inheritIO();
         log.info("Starting bash...");
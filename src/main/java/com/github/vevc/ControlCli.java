@@ -0,0 +1,51 @@
+package com.github.vevc;
+
+import com.github.vevc.config.AppConfig;
+import com.github.vevc.config.ApplicationYamlVo;
+import com.github.vevc.service.ControlServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Client of the control socket: {@code java -jar java-xah.jar ctl status}. Sends its
+ * arguments as one command and prints the response.
+ *
+ * @author vevc
+ */
+public final class ControlCli {
+
+    public static final String COMMAND = "ctl";
+    private static final File SPRING_CONFIG_PATH = new File(System.getProperty("user.dir"), "application.yml");
+
+    private ControlCli() {
+    }
+
+    public static void main(String... args) throws IOException {
+        AppConfig appConfig = ApplicationYamlVo.readAppConfig(SPRING_CONFIG_PATH);
+        Path socketPath = ControlServer.getSocketPath(appConfig);
+        String request = String.join(" ", args) + "\n";
+        String response;
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            channel.write(ByteBuffer.wrap(request.getBytes(StandardCharsets.UTF_8)));
+            try (InputStream in = Channels.newInputStream(channel)) {
+                response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot connect to " + socketPath + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.out.print(response);
+        if (response.startsWith(ControlServer.ERROR_PREFIX)) {
+            System.exit(1);
+        }
+    }
+}
@@ -2,16 +2,24 @@ package com.github.vevc;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.scheduling.annotation.EnableAsync;
+
+import java.util.Arrays;
 
 /**
  * @author vevc
  */
-@EnableAsync
 @SpringBootApplication
 public class JavaXahApplication {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && ControlCli.COMMAND.equals(args[0])) {
+            ControlCli.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (LeanRuntime.isEnabled()) {
+            LeanRuntime.run(args);
+            return;
+        }
         SpringApplication.run(JavaXahApplication.class, args);
     }
 }
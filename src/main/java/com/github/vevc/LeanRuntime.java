@@ -0,0 +1,63 @@
+package com.github.vevc;
+
+import com.github.vevc.config.AppConfig;
+import com.github.vevc.config.ApplicationYamlVo;
+import com.github.vevc.service.AppService;
+import com.github.vevc.service.ControlServer;
+import com.github.vevc.service.impl.ArgoServiceImpl;
+import com.github.vevc.service.impl.Hy2ServiceImpl;
+import com.github.vevc.service.impl.XrayServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Low-footprint runtime: wires the same services as the Spring context by hand, so the
+ * supervisor does not keep a Spring application context alive next to the cores.
+ * Enabled with {@code -Dapp.lean=true}, the config is read from ./application.yml only.
+ *
+ * @author vevc
+ */
+@Slf4j
+public final class LeanRuntime {
+
+    private static final String LEAN_PROPERTY = "app.lean";
+    private static final File SPRING_CONFIG_PATH = new File(System.getProperty("user.dir"), "application.yml");
+
+    private LeanRuntime() {
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(LEAN_PROPERTY);
+    }
+
+    public static void run(String... args) throws Exception {
+        log.info("Starting in lean runtime mode");
+        AppConfig appConfig = ApplicationYamlVo.readAppConfig(SPRING_CONFIG_PATH);
+        ExecutorService executor = newExecutor();
+        ArgoServiceImpl argoService = new ArgoServiceImpl(appConfig, executor::execute);
+        XrayServiceImpl xrayService = new XrayServiceImpl(appConfig);
+        Hy2ServiceImpl hy2Service = new Hy2ServiceImpl(appConfig);
+        AppService appService = new AppService(appConfig, executor::execute, argoService, xrayService, hy2Service);
+        ControlServer controlServer = new ControlServer(appConfig, argoService, xrayService, hy2Service);
+        new AppRunner(appConfig, appService, controlServer).run(args);
+        // like the Spring runtime, keep supervising the cores after the shell exits
+        new CountDownLatch(1).await();
+    }
+
+    /**
+     * virtual threads when the runtime has them (Java 21+), otherwise a plain cached pool
+     *
+     * @return executor
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -6,7 +6,10 @@ import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
 
+import java.util.Arrays;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -17,6 +20,8 @@ import java.util.UUID;
 @Configuration
 @ConfigurationProperties(prefix = "app")
 public class AppConfig {
+    private static final Set<String> ARGO_TRANSPORTS = Set.of("ws", "xhttp");
+
     private String domain;
     private String port;
     private String uuid;
@@ -25,10 +30,20 @@ public class AppConfig {
     private String argoVersion;
     private String argoDomain;
     private String argoToken;
+    private String argoTransport;
+    private String argoXhttpDomain;
+    private String argoXhttpPort;
+    private String argoXhttpPath;
+    private String argoXhttpMode;
+    private String argoXhttpPadding;
+    private String argoMetricsPort;
     private String realityPublicKey;
     private String realityPrivateKey;
     private String realityShortId;
     private String remarksPrefix;
+    private boolean jfrEnabled;
+    private boolean shellEnabled = true;
+    private String controlSocket;
 
     @PostConstruct
     public void init() {
@@ -39,6 +54,32 @@ public class AppConfig {
         hy2Version = StringUtils.defaultIfBlank(hy2Version, "2.6.5");
         argoVersion = StringUtils.defaultIfBlank(argoVersion, "2025.10.0");
         argoDomain = StringUtils.defaultIfBlank(argoDomain, "xxx.trycloudflare.com");
+        argoTransport = StringUtils.defaultIfBlank(argoTransport, "ws");
+        for (String transport : StringUtils.split(argoTransport, ',')) {
+            Assert.isTrue(ARGO_TRANSPORTS.contains(transport.trim().toLowerCase()),
+                    "Unknown argo-transport: " + transport.trim() + ", expected ws, xhttp or ws,xhttp");
+        }
+        argoXhttpDomain = StringUtils.defaultIfBlank(argoXhttpDomain, argoDomain);
+        argoXhttpPort = StringUtils.defaultIfBlank(argoXhttpPort, "8002");
+        argoXhttpPath = StringUtils.defaultIfBlank(argoXhttpPath, "/xh");
+        argoXhttpMode = StringUtils.defaultIfBlank(argoXhttpMode, "stream-up");
+        argoXhttpPadding = StringUtils.defaultIfBlank(argoXhttpPadding, "100-1000");
+        argoMetricsPort = StringUtils.defaultIfBlank(argoMetricsPort, "20241");
         remarksPrefix = StringUtils.defaultIfBlank(remarksPrefix, "vevc");
+        controlSocket = StringUtils.defaultIfBlank(controlSocket, "control.sock");
+    }
+
+    public boolean isArgoWsEnabled() {
+        return this.hasArgoTransport("ws");
+    }
+
+    public boolean isArgoXhttpEnabled() {
+        return this.hasArgoTransport("xhttp");
+    }
+
+    private boolean hasArgoTransport(String transport) {
+        return Arrays.stream(StringUtils.split(argoTransport, ','))
+                .map(String::trim)
+                .anyMatch(transport::equalsIgnoreCase);
     }
 }
@@ -1,8 +1,14 @@
 package com.github.vevc.config;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import lombok.Data;
 
+import java.io.File;
+import java.io.IOException;
+
 /**
  * @author vevc
  */
@@ -21,10 +27,65 @@ public class ApplicationYamlVo {
         this.getApp().setArgoVersion(appConfig.getArgoVersion());
         this.getApp().setArgoDomain(appConfig.getArgoDomain());
         this.getApp().setArgoToken(appConfig.getArgoToken());
+        this.getApp().setArgoTransport(appConfig.getArgoTransport());
+        this.getApp().setArgoXhttpDomain(appConfig.getArgoXhttpDomain());
+        this.getApp().setArgoXhttpPort(appConfig.getArgoXhttpPort());
+        this.getApp().setArgoXhttpPath(appConfig.getArgoXhttpPath());
+        this.getApp().setArgoXhttpMode(appConfig.getArgoXhttpMode());
+        this.getApp().setArgoXhttpPadding(appConfig.getArgoXhttpPadding());
+        this.getApp().setArgoMetricsPort(appConfig.getArgoMetricsPort());
         this.getApp().setRealityPublicKey(appConfig.getRealityPublicKey());
         this.getApp().setRealityPrivateKey(appConfig.getRealityPrivateKey());
         this.getApp().setRealityShortId(appConfig.getRealityShortId());
         this.getApp().setRemarksPrefix(appConfig.getRemarksPrefix());
+        this.getApp().setJfrEnabled(appConfig.isJfrEnabled());
+        this.getApp().setShellEnabled(appConfig.isShellEnabled());
+        this.getApp().setControlSocket(appConfig.getControlSocket());
+    }
+
+    /**
+     * read the app config from a saved application.yml, without Spring's relaxed binding
+     *
+     * @param file application.yml
+     * @return initialized app config, defaults if the file does not exist
+     * @throws IOException e
+     */
+    public static AppConfig readAppConfig(File file) throws IOException {
+        AppConfig appConfig = new AppConfig();
+        if (file.exists()) {
+            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory())
+                    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            appConfig = objectMapper.readValue(file, ApplicationYamlVo.class).toAppConfig();
+        }
+        appConfig.init();
+        return appConfig;
+    }
+
+    public AppConfig toAppConfig() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDomain(app.getDomain());
+        appConfig.setPort(app.getPort());
+        appConfig.setUuid(app.getUuid());
+        appConfig.setXrayVersion(app.getXrayVersion());
+        appConfig.setHy2Version(app.getHy2Version());
+        appConfig.setArgoVersion(app.getArgoVersion());
+        appConfig.setArgoDomain(app.getArgoDomain());
+        appConfig.setArgoToken(app.getArgoToken());
+        appConfig.setArgoTransport(app.getArgoTransport());
+        appConfig.setArgoXhttpDomain(app.getArgoXhttpDomain());
+        appConfig.setArgoXhttpPort(app.getArgoXhttpPort());
+        appConfig.setArgoXhttpPath(app.getArgoXhttpPath());
+        appConfig.setArgoXhttpMode(app.getArgoXhttpMode());
+        appConfig.setArgoXhttpPadding(app.getArgoXhttpPadding());
+        appConfig.setArgoMetricsPort(app.getArgoMetricsPort());
+        appConfig.setRealityPublicKey(app.getRealityPublicKey());
+        appConfig.setRealityPrivateKey(app.getRealityPrivateKey());
+        appConfig.setRealityShortId(app.getRealityShortId());
+        appConfig.setRemarksPrefix(app.getRemarksPrefix());
+        appConfig.setJfrEnabled(Boolean.TRUE.equals(app.getJfrEnabled()));
+        appConfig.setShellEnabled(!Boolean.FALSE.equals(app.getShellEnabled()));
+        appConfig.setControlSocket(app.getControlSocket());
+        return appConfig;
     }
 
     @Data
@@ -42,6 +103,20 @@ public class ApplicationYamlVo {
         private String argoDomain;
         @JsonProperty("argo-token")
         private String argoToken;
+        @JsonProperty("argo-transport")
+        private String argoTransport;
+        @JsonProperty("argo-xhttp-domain")
+        private String argoXhttpDomain;
+        @JsonProperty("argo-xhttp-port")
+        private String argoXhttpPort;
+        @JsonProperty("argo-xhttp-path")
+        private String argoXhttpPath;
+        @JsonProperty("argo-xhttp-mode")
+        private String argoXhttpMode;
+        @JsonProperty("argo-xhttp-padding")
+        private String argoXhttpPadding;
+        @JsonProperty("argo-metrics-port")
+        private String argoMetricsPort;
         @JsonProperty("reality-public-key")
         private String realityPublicKey;
         @JsonProperty("reality-private-key")
@@ -50,6 +125,12 @@ public class ApplicationYamlVo {
         private String realityShortId;
         @JsonProperty("remarks-prefix")
         private String remarksPrefix;
+        @JsonProperty("jfr-enabled")
+        private Boolean jfrEnabled;
+        @JsonProperty("shell-enabled")
+        private Boolean shellEnabled;
+        @JsonProperty("control-socket")
+        private String controlSocket;
     }
 
     @Data
@@ -4,17 +4,31 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.github.vevc.config.AppConfig;
 import com.github.vevc.config.ApplicationYamlVo;
+import com.github.vevc.util.StartupTimeline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Strings;
+import org.springframework.util.Assert;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.PosixFilePermission;
+import java.time.Duration;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * @author vevc
@@ -26,9 +40,29 @@ public abstract class AbstractAppService {
     private static final File SPRING_CONFIG_PATH = new File(System.getProperty("user.dir"), "application.yml");
     private static final File BINARY_PATH = new File(System.getProperty("user.dir"), "bin");
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(new YAMLFactory());
+    private static final String STAGING_DIR_NAME = ".staging";
+    private static final String VERSION_FILE_NAME = ".version";
+    private static final String ROLLBACK_SUFFIX = ".prev";
+    private static final Duration UPGRADE_READY_WINDOW = Duration.ofSeconds(30);
+    private static final long HANDOVER_TIMEOUT_SECONDS = 10;
+    private static final long VERSION_TIMEOUT_SECONDS = 5;
+    private static final String TEMPLATE_DIR_PROPERTY = "app.template-dir";
+    /**
+     * first dotted version in the output of xray version, hysteria version or cloudflared --version
+     */
+    private static final Pattern VERSION_PATTERN = Pattern.compile("(\\d+(?:\\.\\d+)+)");
     protected static final boolean OS_IS_ARM;
 
     protected final AppConfig appConfig;
+    private final Set<Process> processes = ConcurrentHashMap.newKeySet();
+    private final Set<Process> handedOver = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger restarts = new AtomicInteger();
+    private volatile boolean upgradePending;
+    private volatile String installedVersion;
+    /**
+     * how long a switched version gets to become ready, shortened by tests
+     */
+    Duration readyWindow = UPGRADE_READY_WINDOW;
 
     static {
         String arch = System.getProperty("os.arch").toLowerCase();
@@ -42,6 +76,28 @@ public abstract class AbstractAppService {
      */
     protected abstract String getAppDownloadUrl();
 
+    /**
+     * get the configured app version
+     *
+     * @return version
+     */
+    protected abstract String getAppVersion();
+
+    /**
+     * download the configured version of the app binary into a directory, named after the app
+     *
+     * @param binaryPath target directory
+     * @throws Exception e
+     */
+    protected abstract void installBinary(File binaryPath) throws Exception;
+
+    /**
+     * get the arguments that make the app print its version
+     *
+     * @return args
+     */
+    protected abstract String[] getVersionArgs();
+
     /**
      * install app
      *
@@ -56,6 +112,13 @@ public abstract class AbstractAppService {
      */
     protected abstract void startup() throws Exception;
 
+    /**
+     * check whether the app is accepting traffic
+     *
+     * @return ready
+     */
+    protected abstract boolean isReady();
+
     /**
      * get app name
      *
@@ -64,7 +127,7 @@ public abstract class AbstractAppService {
     protected abstract String getAppName();
 
     protected File initBinaryPath() throws IOException {
-        File binaryPath = new File(BINARY_PATH, this.getAppName());
+        File binaryPath = this.getBinaryPath();
         FileUtils.forceMkdir(binaryPath);
         FileUtils.cleanDirectory(binaryPath);
         return binaryPath;
@@ -74,6 +137,362 @@ public abstract class AbstractAppService {
         return new File(BINARY_PATH, this.getAppName());
     }
 
+    protected String getServiceName() {
+        return Strings.CS.removeEnd(this.getClass().getSimpleName(), "ServiceImpl");
+    }
+
+    /**
+     * begin a startup phase of this app, close it to end the phase
+     *
+     * @param phase phase name
+     * @return phase
+     */
+    protected StartupTimeline.Phase phase(String phase) {
+        return StartupTimeline.begin(this.getServiceName(), phase);
+    }
+
+    protected void recordVersion(File binaryPath) throws IOException {
+        this.recordVersion(binaryPath, this.getAppVersion());
+    }
+
+    private void recordVersion(File binaryPath, String version) throws IOException {
+        Files.writeString(new File(binaryPath, VERSION_FILE_NAME).toPath(), version);
+        installedVersion = version;
+    }
+
+    /**
+     * ask the installed binary for its version
+     *
+     * @return version, null if the output has none
+     */
+    private String detectInstalledVersion() {
+        File appFile = new File(this.getBinaryPath(), this.getAppName());
+        try {
+            ProcessBuilder pb = new ProcessBuilder(ArrayUtils.addFirst(this.getVersionArgs(), appFile.getAbsolutePath()));
+            pb.redirectErrorStream(true);
+            Process process = pb.start();
+            // a binary that does not know the version args may just start serving
+            if (!process.waitFor(VERSION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                log.warn("{} did not print its version within {}s", appFile, VERSION_TIMEOUT_SECONDS);
+                return null;
+            }
+            String output;
+            try (InputStream in = process.getInputStream()) {
+                output = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Matcher matcher = VERSION_PATTERN.matcher(output);
+            return matcher.find() ? matcher.group(1) : null;
+        } catch (Exception e) {
+            log.warn("Cannot read the version of {}", appFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * compare the installed version with the configured one, a mismatch is switched before startup
+     *
+     * @throws IOException e
+     */
+    protected void checkInstalledVersion() throws IOException {
+        File versionFile = new File(this.getBinaryPath(), VERSION_FILE_NAME);
+        if (!versionFile.exists()) {
+            // installed before versions were recorded, the config may already name a newer one
+            String detected = this.detectInstalledVersion();
+            if (detected == null) {
+                log.warn("{} version unknown, assuming the configured {}", this.getServiceName(), this.getAppVersion());
+                detected = this.getAppVersion();
+            }
+            this.recordVersion(this.getBinaryPath(), detected);
+        }
+        installedVersion = Files.readString(versionFile.toPath()).trim();
+        upgradePending = !installedVersion.equals(this.getAppVersion());
+        if (upgradePending) {
+            log.info("{} {} installed, {} configured",
+                    this.getServiceName(), installedVersion, this.getAppVersion());
+        }
+    }
+
+    public boolean isUpgradePending() {
+        return upgradePending;
+    }
+
+    /**
+     * @return version recorded in bin/&lt;app&gt;/.version, null before install
+     */
+    public String getInstalledVersion() {
+        return installedVersion;
+    }
+
+    /**
+     * take over the settings this app is rendered from out of a re-read application.yml
+     *
+     * @param saved re-read app config
+     */
+    public void applyConfig(AppConfig saved) {
+    }
+
+    public List<Long> getPids() {
+        return processes.stream().map(Process::pid).sorted().toList();
+    }
+
+    /**
+     * @return restarts of the supervised processes after a failure
+     */
+    public int getRestarts() {
+        return restarts.get();
+    }
+
+    /**
+     * restart the supervised processes from the installed binary, the other apps keep running
+     *
+     * @return ready within the readiness window
+     * @throws Exception e
+     */
+    public synchronized boolean restart() throws Exception {
+        log.info("Restarting {}...", this.getServiceName());
+        return this.handover(new File(this.getBinaryPath(), this.getAppName()));
+    }
+
+    /**
+     * stage the configured version next to the running one, validate it, switch the binary
+     * with an atomic rename and hand the running process over; the previous binary is
+     * restored if the new one is not ready within the readiness window
+     *
+     * @return true if the new version is serving
+     * @throws Exception e
+     */
+    public synchronized boolean upgrade() throws Exception {
+        File appFile = new File(this.getBinaryPath(), this.getAppName());
+        this.stageAndSwitch();
+        if (this.handover(appFile)) {
+            this.completeUpgrade();
+            return true;
+        }
+        return this.rollback();
+    }
+
+    /**
+     * stage, validate and switch to the configured version before the app is started, so an
+     * upgrade found at startup does not interrupt the app a second time; confirm it with
+     * {@link #confirmUpgrade()} once the app was started
+     *
+     * @throws Exception e
+     */
+    public synchronized void upgradeBeforeStartup() throws Exception {
+        this.stageAndSwitch();
+    }
+
+    /**
+     * keep a version switched before startup if the app is ready within the readiness window,
+     * otherwise restore the previous binary and hand the app over to it
+     *
+     * @return true if the new version is serving
+     * @throws Exception e
+     */
+    public synchronized boolean confirmUpgrade() throws Exception {
+        if (this.await(this::isReady)) {
+            this.completeUpgrade();
+            return true;
+        }
+        return this.rollback();
+    }
+
+    private void stageAndSwitch() throws Exception {
+        String name = this.getServiceName();
+        String version = this.getAppVersion();
+        File stagingPath = new File(new File(this.getBinaryPath().getParentFile(), STAGING_DIR_NAME),
+                this.getAppName());
+        try {
+            FileUtils.forceMkdir(stagingPath);
+            FileUtils.cleanDirectory(stagingPath);
+            log.info("Staging {} {}...", name, version);
+            this.installBinary(stagingPath);
+            File stagedFile = new File(stagingPath, this.getAppName());
+            this.validateBinary(stagedFile);
+            log.info("{} {} validated", name, version);
+
+            File appFile = new File(this.getBinaryPath(), this.getAppName());
+            File rollbackFile = new File(this.getBinaryPath(), this.getAppName() + ROLLBACK_SUFFIX);
+            Files.copy(appFile.toPath(), rollbackFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            // staging lives under bin/, so this is a rename on the same file system
+            Files.move(stagedFile.toPath(), appFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            FileUtils.deleteQuietly(stagingPath);
+        }
+    }
+
+    private void completeUpgrade() throws IOException {
+        this.recordVersion(this.getBinaryPath());
+        upgradePending = false;
+        FileUtils.deleteQuietly(new File(this.getBinaryPath(), this.getAppName() + ROLLBACK_SUFFIX));
+        log.info("{} upgraded to {}", this.getServiceName(), this.getAppVersion());
+    }
+
+    private boolean rollback() throws Exception {
+        String name = this.getServiceName();
+        log.warn("{} {} not ready within {} s, rolling back", name, this.getAppVersion(), readyWindow.toSeconds());
+        File appFile = new File(this.getBinaryPath(), this.getAppName());
+        File rollbackFile = new File(this.getBinaryPath(), this.getAppName() + ROLLBACK_SUFFIX);
+        Files.move(rollbackFile.toPath(), appFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        if (!this.handover(appFile)) {
+            log.error("{} not ready after rollback", name);
+        }
+        return false;
+    }
+
+    /**
+     * validate a staged binary before it replaces the running one
+     *
+     * @param appFile staged binary
+     * @throws Exception e
+     */
+    protected void validateBinary(File appFile) throws Exception {
+        String output = this.runCommand(ArrayUtils.addFirst(this.getVersionArgs(), appFile.getAbsolutePath()));
+        Assert.isTrue(output.contains(this.getAppVersion()),
+                "Unexpected " + this.getServiceName() + " version: " + output.trim());
+    }
+
+    /**
+     * a second instance that can serve next to the running process while it is handed over
+     *
+     * @param appFile binary to run
+     * @return overlap, null if the app ports cannot be shared
+     */
+    protected Overlap overlap(File appFile) {
+        return null;
+    }
+
+    /**
+     * stop the supervised processes so their loops start them again from the current binary,
+     * and wait for the app to become ready
+     *
+     * @param appFile binary the processes are started from
+     * @return ready within the readiness window
+     * @throws Exception e
+     */
+    private boolean handover(File appFile) throws Exception {
+        Overlap overlap = this.overlap(appFile);
+        Process bridge = null;
+        try {
+            if (overlap != null) {
+                bridge = overlap.command().start();
+                if (!this.await(overlap.ready())) {
+                    log.warn("{} overlap instance not ready, handing over without it", this.getServiceName());
+                }
+            }
+            this.stopProcesses();
+            return this.await(this::isReady);
+        } finally {
+            if (bridge != null) {
+                bridge.destroy();
+            }
+        }
+    }
+
+    /**
+     * stop the supervised processes as handed over, so their loops start them again at once
+     *
+     * @throws InterruptedException e
+     */
+    protected void stopProcesses() throws InterruptedException {
+        for (Process process : List.copyOf(processes)) {
+            handedOver.add(process);
+            process.destroy();
+            if (!process.waitFor(HANDOVER_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private boolean await(BooleanSupplier ready) throws InterruptedException {
+        long deadline = System.nanoTime() + readyWindow.toNanos();
+        while (!ready.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        return true;
+    }
+
+    protected String runCommand(String... command) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        String output;
+        try (InputStream in = process.getInputStream()) {
+            output = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        int exitCode = process.waitFor();
+        Assert.isTrue(exitCode == 0, String.join(" ", command) + " exited with code " + exitCode + ": " + output.trim());
+        return output;
+    }
+
+    /**
+     * render the config of the installed app again from its template and the current app config,
+     * the reality keys and the tls cert of the install are kept
+     *
+     * @throws Exception e
+     */
+    public void updateConfig() throws Exception {
+    }
+
+    /**
+     * fetch a config template, from a local directory instead of the published templates
+     * when -Dapp.template-dir is set
+     *
+     * @param configUrl published template url
+     * @return template
+     * @throws IOException e
+     */
+    protected String fetchConfig(String configUrl) throws IOException {
+        String templateDir = System.getProperty(TEMPLATE_DIR_PROPERTY);
+        try (StartupTimeline.Phase phase = this.phase("config-fetch");
+             InputStream in = templateDir == null
+                     ? new URL(configUrl).openStream()
+                     : new FileInputStream(new File(templateDir, FilenameUtils.getName(configUrl)))) {
+            byte[] content = in.readAllBytes();
+            phase.setBytes(content.length);
+            return new String(content, StandardCharsets.UTF_8);
+        }
+    }
+
+    protected Process spawn(ProcessBuilder pb) throws IOException {
+        try (StartupTimeline.Phase ignored = this.phase("spawn")) {
+            Process process = pb.start();
+            processes.add(process);
+            return process;
+        }
+    }
+
+    /**
+     * wait for a supervised process to exit and decide whether its loop starts it again:
+     * handed over processes restart at once, failed ones after a short delay
+     *
+     * @param process supervised process
+     * @return restart
+     * @throws InterruptedException e
+     */
+    protected boolean awaitRestart(Process process) throws InterruptedException {
+        int exitCode = process.waitFor();
+        processes.remove(process);
+        String name = this.getServiceName();
+        if (handedOver.remove(process)) {
+            log.info("{} process handed over, restarting...", name);
+            return true;
+        }
+        if (exitCode == 0) {
+            log.info("{} process exited with code: {}", name, exitCode);
+            return false;
+        }
+        log.info("{} process exited with code: {}, restarting...", name, exitCode);
+        restarts.incrementAndGet();
+        TimeUnit.SECONDS.sleep(3);
+        return true;
+    }
+
     protected void setExecutePermission(Path destFile) throws IOException {
         Set<PosixFilePermission> perms = Files.getPosixFilePermissions(destFile);
         perms.add(PosixFilePermission.OWNER_EXECUTE);
@@ -83,28 +502,24 @@ public abstract class AbstractAppService {
     }
 
     protected void download(String downloadUrl, File file) throws IOException {
-        try (InputStream in = new URL(downloadUrl).openStream()) {
-            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (StartupTimeline.Phase phase = this.phase("download");
+             InputStream in = new URL(downloadUrl).openStream()) {
+            phase.setBytes(Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING));
         }
     }
 
     protected void updateSpringConfig() throws Exception {
-        ApplicationYamlVo applicationYamlVo = new ApplicationYamlVo();
-        applicationYamlVo.setAppConfig(appConfig);
-        OBJECT_MAPPER.writeValue(SPRING_CONFIG_PATH, applicationYamlVo);
+        try (StartupTimeline.Phase phase = this.phase("spring-config")) {
+            ApplicationYamlVo applicationYamlVo = new ApplicationYamlVo();
+            applicationYamlVo.setAppConfig(appConfig);
+            OBJECT_MAPPER.writeValue(SPRING_CONFIG_PATH, applicationYamlVo);
+            phase.setBytes(SPRING_CONFIG_PATH.length());
+        }
     }
 
-    /**
-     * start process
-     *
-     * @param pb processBuilder
-     * @return exitCode
-     * @throws Exception e
-     */
-    protected int startProcess(ProcessBuilder pb) throws Exception {
-        Process process = pb.start();
+    protected void drainOutput(InputStream in) throws IOException {
         try (
-                InputStream in = process.getInputStream();
+                in;
                 InputStreamReader inReader = new InputStreamReader(in);
                 BufferedReader reader = new BufferedReader(inReader)
         ) {
@@ -113,6 +528,14 @@ public abstract class AbstractAppService {
                 log.info(line);
             }
         }
-        return process.waitFor();
+    }
+
+    /**
+     * temporary instance that serves while the supervised process is handed over
+     *
+     * @param command command of the instance
+     * @param ready   readiness of the instance
+     */
+    public record Overlap(ProcessBuilder command, BooleanSupplier ready) {
     }
 }
@@ -1,12 +1,21 @@
 package com.github.vevc.service;
 
+import com.github.vevc.config.AppConfig;
 import com.github.vevc.service.impl.ArgoServiceImpl;
 import com.github.vevc.service.impl.Hy2ServiceImpl;
 import com.github.vevc.service.impl.XrayServiceImpl;
+import com.github.vevc.util.StartupTimeline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author vevc
  */
@@ -15,12 +24,21 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class AppService {
 
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(60);
+    private static final Path JFR_RECORDING_PATH = Paths.get(System.getProperty("user.dir"), "startup.jfr");
+
+    private final AppConfig appConfig;
+    private final TaskExecutor taskExecutor;
+
     private final ArgoServiceImpl argoService;
     private final XrayServiceImpl xrayService;
     private final Hy2ServiceImpl hy2Service;
 
     public void install() {
         try {
+            if (appConfig.isJfrEnabled()) {
+                StartupTimeline.startRecording(JFR_RECORDING_PATH);
+            }
             argoService.install();
             xrayService.install();
             hy2Service.install();
@@ -32,11 +50,63 @@ public class AppService {
 
     public void startup() {
         try {
-            argoService.startup();
-            xrayService.startup();
-            hy2Service.startup();
+            List<AbstractAppService> upgraded = this.upgradePendingApps();
+            // argo forwards to the xray argo inbounds, so it waits for them to be bound
+            StartupGraph graph = new StartupGraph(taskExecutor)
+                    .node("Xray", xrayService)
+                    .node("Hy2", hy2Service)
+                    .node("Argo", argoService, "Xray");
+            if (graph.run(STARTUP_TIMEOUT)) {
+                log.info("✅ Startup completed. You can view node details at: {}", argoService.getNodeFilePath());
+            }
+            this.confirmUpgrades(upgraded);
         } catch (Exception e) {
             log.error("App startup failed", e);
+        } finally {
+            StartupTimeline.printSummary();
+            StartupTimeline.stopRecording();
+        }
+    }
+
+    /**
+     * switch cores whose installed version differs from the config before they are started,
+     * a core that cannot be staged or validated starts from its installed version
+     *
+     * @return cores started from a new version
+     */
+    private List<AbstractAppService> upgradePendingApps() {
+        List<AbstractAppService> upgraded = new ArrayList<>();
+        for (AbstractAppService service : List.of(xrayService, hy2Service, argoService)) {
+            if (!service.isUpgradePending()) {
+                continue;
+            }
+            try {
+                service.upgradeBeforeStartup();
+                upgraded.add(service);
+            } catch (Exception e) {
+                log.error("{} upgrade failed, keeping the installed version", service.getServiceName(), e);
+            }
+        }
+        return upgraded;
+    }
+
+    /**
+     * keep the new versions that became ready, roll back the others
+     *
+     * @param upgraded cores started from a new version
+     */
+    private void confirmUpgrades(List<AbstractAppService> upgraded) {
+        if (upgraded.isEmpty()) {
+            return;
         }
+        taskExecutor.execute(() -> {
+            for (AbstractAppService service : upgraded) {
+                try {
+                    service.confirmUpgrade();
+                } catch (Exception e) {
+                    log.error("{} upgrade confirmation failed", service.getServiceName(), e);
+                }
+            }
+        });
     }
 }
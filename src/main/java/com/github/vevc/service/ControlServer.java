@@ -0,0 +1,265 @@
+package com.github.vevc.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.github.vevc.config.AppConfig;
+import com.github.vevc.config.ApplicationYamlVo;
+import com.github.vevc.service.impl.ArgoServiceImpl;
+import com.github.vevc.service.impl.Hy2ServiceImpl;
+import com.github.vevc.service.impl.XrayServiceImpl;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local control plane on a unix domain socket: one text command per connection, the
+ * response is written back and the connection closed. Only the owner of the socket
+ * file can connect, no TCP port is opened.
+ *
+ * @author vevc
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ControlServer {
+
+    public static final String ERROR_PREFIX = "error: ";
+    private static final long READINESS_INTERVAL_MILLIS = 2000;
+    private static final File SPRING_CONFIG_PATH = new File(System.getProperty("user.dir"), "application.yml");
+    private static final String HELP = """
+            status                      state of every app
+            restart <app>               restart one app, the others keep serving
+            reload <app>                re-read the app's settings from application.yml and render its config,
+                                        then upgrade the app if its version changed, otherwise restart it
+            log-level <level> [logger]  change a log level at runtime, root logger by default
+            metrics                     dump supervisor and app metrics
+            """;
+
+    private final AppConfig appConfig;
+    private final ArgoServiceImpl argoService;
+    private final XrayServiceImpl xrayService;
+    private final Hy2ServiceImpl hy2Service;
+    /**
+     * readiness probes connect to the apps, status and metrics answer from the last refresh
+     */
+    private final Map<AbstractAppService, Boolean> readiness = new ConcurrentHashMap<>();
+
+    private ServerSocketChannel server;
+
+    public static Path getSocketPath(AppConfig appConfig) {
+        return Paths.get(System.getProperty("user.dir")).resolve(appConfig.getControlSocket());
+    }
+
+    public void start() throws IOException {
+        Path socketPath = getSocketPath(appConfig);
+        // a socket left behind by an earlier run would fail the bind
+        Files.deleteIfExists(socketPath);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            Files.setPosixFilePermissions(socketPath, PosixFilePermissions.fromString("rw-------"));
+        } catch (IOException | RuntimeException e) {
+            // e.g. a socket path over the ~108 byte limit of sun_path
+            server.close();
+            throw e;
+        }
+        socketPath.toFile().deleteOnExit();
+        Thread acceptor = new Thread(this::accept, "control-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        Thread prober = new Thread(this::probeReadiness, "control-readiness");
+        prober.setDaemon(true);
+        prober.start();
+        log.info("Control socket listening at {}", socketPath);
+    }
+
+    private void accept() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                // restart and reload block for the readiness window, status must not wait behind them
+                Thread handler = new Thread(() -> this.serve(channel), "control-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                log.warn("Control socket accept failed", e);
+            }
+        }
+    }
+
+    private void probeReadiness() {
+        while (server.isOpen()) {
+            this.refreshReadiness();
+            try {
+                TimeUnit.MILLISECONDS.sleep(READINESS_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    void refreshReadiness() {
+        for (AbstractAppService service : this.services()) {
+            readiness.put(service, service.isReady());
+        }
+    }
+
+    private boolean isReady(AbstractAppService service) {
+        return readiness.getOrDefault(service, false);
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel) {
+            BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            String request = reader.readLine();
+            String response = this.handle(request == null ? "" : request.trim());
+            channel.write(ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            log.warn("Control request failed", e);
+        }
+    }
+
+    String handle(String request) {
+        String[] args = request.split("\\s+");
+        try {
+            return switch (args[0]) {
+                case "status" -> this.status();
+                case "restart" -> this.restart(this.findService(args));
+                case "reload" -> this.reload(this.findService(args));
+                case "log-level" -> this.logLevel(args);
+                case "metrics" -> this.metrics();
+                case "", "help" -> HELP;
+                default -> ERROR_PREFIX + "unknown command " + args[0] + "\n" + HELP;
+            };
+        } catch (IllegalArgumentException e) {
+            return ERROR_PREFIX + e.getMessage() + "\n";
+        } catch (Exception e) {
+            log.error("Control command failed: {}", request, e);
+            return ERROR_PREFIX + e + "\n";
+        }
+    }
+
+    private List<AbstractAppService> services() {
+        return List.of(xrayService, hy2Service, argoService);
+    }
+
+    private AbstractAppService findService(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException(args[0] + " needs an app: xray, hy2 or argo");
+        }
+        return this.services().stream()
+                .filter(service -> service.getServiceName().equalsIgnoreCase(args[1]))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("unknown app " + args[1]));
+    }
+
+    private String status() {
+        StringBuilder status = new StringBuilder();
+        for (AbstractAppService service : this.services()) {
+            status.append(String.format("%-5s %-10s %-9s pids=%s restarts=%d%s%n", service.getServiceName(),
+                    Objects.toString(service.getInstalledVersion(), "-"), this.isReady(service) ? "ready" : "not-ready", service.getPids(),
+                    service.getRestarts(), service.isUpgradePending() ? " upgrade-pending" : ""));
+        }
+        return status.toString();
+    }
+
+    private String restart(AbstractAppService service) throws Exception {
+        boolean ready = service.restart();
+        readiness.put(service, ready);
+        return String.format("%s restarted, %s%n", service.getServiceName(), ready ? "ready" : "not ready");
+    }
+
+    private String reload(AbstractAppService service) throws Exception {
+        AppConfig saved = ApplicationYamlVo.readAppConfig(SPRING_CONFIG_PATH);
+        service.applyConfig(saved);
+        service.updateConfig();
+        service.checkInstalledVersion();
+        if (!service.isUpgradePending()) {
+            return this.restart(service);
+        }
+        boolean upgraded = service.upgrade();
+        readiness.put(service, upgraded || service.isReady());
+        return String.format("%s %s%n", service.getServiceName(),
+                upgraded ? "upgraded to " + service.getAppVersion() : "upgrade failed, rolled back");
+    }
+
+    private String logLevel(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("log-level needs a level");
+        }
+        String name = args.length > 2 ? args[2] : org.slf4j.Logger.ROOT_LOGGER_NAME;
+        Level level = Level.toLevel(args[1].toUpperCase(Locale.ROOT), null);
+        if (level == null) {
+            throw new IllegalArgumentException("unknown level " + args[1]);
+        }
+        ((Logger) LoggerFactory.getLogger(name)).setLevel(level);
+        log.info("Log level of {} set to {}", name, level);
+        return name + " set to " + level + "\n";
+    }
+
+    private String metrics() {
+        StringJoiner metrics = new StringJoiner("\n", "", "\n");
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        metrics.add("jvm.uptime.ms " + ManagementFactory.getRuntimeMXBean().getUptime());
+        metrics.add("jvm.rss.kb " + readRssKb(ProcessHandle.current().pid()));
+        metrics.add("jvm.heap.used.bytes " + heap.getUsed());
+        metrics.add("jvm.heap.committed.bytes " + heap.getCommitted());
+        metrics.add("jvm.nonheap.used.bytes " + nonHeap.getUsed());
+        metrics.add("jvm.threads " + ManagementFactory.getThreadMXBean().getThreadCount());
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = gc.getName().replace(' ', '-');
+            metrics.add("jvm.gc." + name + ".count " + gc.getCollectionCount());
+            metrics.add("jvm.gc." + name + ".time.ms " + gc.getCollectionTime());
+        }
+        for (AbstractAppService service : this.services()) {
+            String prefix = "app." + service.getServiceName().toLowerCase(Locale.ROOT);
+            List<Long> pids = service.getPids();
+            metrics.add(prefix + ".ready " + (this.isReady(service) ? 1 : 0));
+            metrics.add(prefix + ".processes " + pids.size());
+            metrics.add(prefix + ".restarts " + service.getRestarts());
+            metrics.add(prefix + ".rss.kb " + pids.stream().mapToLong(ControlServer::readRssKb).sum());
+        }
+        return metrics.toString();
+    }
+
+    private static long readRssKb(long pid) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring("VmRSS:".length()).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not on linux or the process just exited
+        }
+        return 0;
+    }
+}
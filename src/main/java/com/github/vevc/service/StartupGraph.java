@@ -0,0 +1,129 @@
+package com.github.vevc.service;
+
+import com.github.vevc.util.StartupTimeline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts apps as a small dependency graph: a node is started once all of its
+ * dependencies are ready, independent nodes start together.
+ *
+ * @author vevc
+ */
+@Slf4j
+public class StartupGraph {
+
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private final Executor executor;
+
+    /**
+     * @param executor runs the blocking supervisor loop of every app
+     */
+    public StartupGraph(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * add a node, dependencies must be added first
+     *
+     * @param name      node name
+     * @param service   app service
+     * @param dependsOn names of the nodes that must be ready first
+     * @return this
+     */
+    public StartupGraph node(String name, AbstractAppService service, String... dependsOn) {
+        for (String dependency : dependsOn) {
+            Assert.isTrue(nodes.containsKey(dependency), "Unknown startup dependency: " + dependency);
+        }
+        nodes.put(name, new Node(name, service, List.of(dependsOn), executor));
+        return this;
+    }
+
+    /**
+     * start all nodes and wait until they are ready
+     *
+     * @param timeout readiness timeout for the whole graph
+     * @return true if every node became ready in time
+     * @throws Exception e
+     */
+    public boolean run(Duration timeout) throws Exception {
+        long begin = System.nanoTime();
+        long deadline = begin + timeout.toNanos();
+        while (true) {
+            boolean allReady = true;
+            for (Node node : nodes.values()) {
+                if (node.readyAt > 0) {
+                    continue;
+                }
+                allReady = false;
+                if (node.startedAt == 0) {
+                    if (node.dependsOn.stream().allMatch(dependency -> nodes.get(dependency).readyAt > 0)) {
+                        node.start();
+                    }
+                } else if (node.service.isReady()) {
+                    node.readyAt = System.nanoTime();
+                    node.readyPhase.close();
+                    log.info("{} ready in {} ms", node.name, millis(node.startedAt, node.readyAt));
+                }
+            }
+            if (allReady) {
+                log.info("All apps ready in {} ms", millis(begin, System.nanoTime()));
+                return true;
+            }
+            if (System.nanoTime() > deadline) {
+                List<String> pending = new ArrayList<>();
+                for (Node node : nodes.values()) {
+                    if (node.readyAt == 0) {
+                        pending.add(node.name);
+                    }
+                    if (node.startedAt == 0) {
+                        node.start();
+                    }
+                }
+                log.warn("Apps not ready after {} s: {}", timeout.toSeconds(), pending);
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL_MILLIS);
+        }
+    }
+
+    private static long millis(long from, long to) {
+        return TimeUnit.NANOSECONDS.toMillis(to - from);
+    }
+
+    private static class Node {
+        private final String name;
+        private final AbstractAppService service;
+        private final List<String> dependsOn;
+        private final Executor executor;
+        private long startedAt;
+        private long readyAt;
+        private StartupTimeline.Phase readyPhase;
+
+        private Node(String name, AbstractAppService service, List<String> dependsOn, Executor executor) {
+            this.name = name;
+            this.service = service;
+            this.dependsOn = dependsOn;
+            this.executor = executor;
+        }
+
+        private void start() {
+            startedAt = System.nanoTime();
+            readyPhase = StartupTimeline.begin(name, "ready");
+            executor.execute(() -> {
+                try {
+                    service.startup();
+                } catch (Exception e) {
+                    log.error("{} startup failed", name, e);
+                }
+            });
+        }
+    }
+}
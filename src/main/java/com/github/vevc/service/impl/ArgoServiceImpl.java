@@ -2,20 +2,26 @@ package com.github.vevc.service.impl;
 
 import com.github.vevc.config.AppConfig;
 import com.github.vevc.service.AbstractAppService;
+import com.github.vevc.util.ListenProbe;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,12 +36,30 @@ public class ArgoServiceImpl extends AbstractAppService {
     private static final String APP_DOWNLOAD_URL = "https://github.com/cloudflare/cloudflared/releases/download/%s/cloudflared-linux-%s";
     private static final Pattern QUICK_TUNNEL_HOST_PATTERN = Pattern.compile("https://[a-z0-9-]+\\.trycloudflare\\.com");
     private static final String WS_URL = "vless://%s@%s:443?encryption=none&security=tls&sni=%s&fp=chrome&type=ws&path=%%2F%%3Fed%%3D2560#%s-ws-argo";
+    private static final String XHTTP_URL = "vless://%s@%s:443?encryption=none&security=tls&sni=%s&fp=chrome&type=xhttp&host=%s&path=%s&mode=%s&extra=%s#%s-xhttp-argo";
+    private static final String XHTTP_EXTRA = "{\"xPaddingBytes\":\"%s\"}";
+    private static final String WS_ORIGIN_PORT = "8001";
+    private static final int WS_METRICS_OFFSET = 0;
+    private static final int XHTTP_METRICS_OFFSET = 1;
+    private static final int OVERLAP_METRICS_OFFSET = 2;
+    private static final String READY_URL = "http://127.0.0.1:%s/ready";
     private static final String REALITY_URL = "vless://%s@%s:%s?encryption=none&flow=xtls-rprx-vision&security=reality&sni=www.cloudflare.com&fp=chrome&pbk=%s&sid=%s&spx=%%2F&type=tcp&headerType=none#%s-reality";
     private static final String HY2_URL = "hysteria2://%s@%s:%s?insecure=1#%s-hy2";
     private static final Path NODE_FILE_PATH = Paths.get(System.getProperty("user.dir"), "node.txt");
 
-    public ArgoServiceImpl(AppConfig appConfig) {
+    private final TaskExecutor taskExecutor;
+    private final Set<String> quickTunnels = ConcurrentHashMap.newKeySet();
+    private final Set<String> resolvedQuickTunnels = ConcurrentHashMap.newKeySet();
+    /**
+     * bumped when the tunnels are laid out again, loops of an older generation end
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+    private final Object resolveLock = new Object();
+    private volatile boolean layoutChanged;
+
+    public ArgoServiceImpl(AppConfig appConfig, TaskExecutor taskExecutor) {
         super(appConfig);
+        this.taskExecutor = taskExecutor;
     }
 
     @Override
@@ -44,96 +68,277 @@ public class ArgoServiceImpl extends AbstractAppService {
         return String.format(APP_DOWNLOAD_URL, appConfig.getArgoVersion(), arch);
     }
 
+    @Override
+    protected String getAppVersion() {
+        return appConfig.getArgoVersion();
+    }
+
+    @Override
+    protected String[] getVersionArgs() {
+        return new String[]{"--version"};
+    }
+
     @Override
     public void install() throws Exception {
         // if argo exists, skip install
         if (new File(this.getBinaryPath(), APP_NAME).exists()) {
             log.info("Argo already exists, skip install");
+            this.checkInstalledVersion();
             return;
         }
 
         File binaryPath = this.initBinaryPath();
+        this.installBinary(binaryPath);
+        this.recordVersion(binaryPath);
+        log.info("Argo installed successfully");
+        this.updateSubFile();
+    }
+
+    @Override
+    public void updateConfig() throws Exception {
+        this.updateSubFile();
+    }
+
+    @Override
+    public void applyConfig(AppConfig saved) {
+        String layout = this.tunnelLayout();
+        appConfig.setArgoVersion(saved.getArgoVersion());
+        appConfig.setArgoDomain(saved.getArgoDomain());
+        appConfig.setArgoToken(saved.getArgoToken());
+        appConfig.setArgoTransport(saved.getArgoTransport());
+        appConfig.setArgoXhttpDomain(saved.getArgoXhttpDomain());
+        appConfig.setArgoXhttpPort(saved.getArgoXhttpPort());
+        appConfig.setArgoXhttpPath(saved.getArgoXhttpPath());
+        appConfig.setArgoXhttpMode(saved.getArgoXhttpMode());
+        appConfig.setArgoXhttpPadding(saved.getArgoXhttpPadding());
+        appConfig.setArgoMetricsPort(saved.getArgoMetricsPort());
+        if (!layout.equals(this.tunnelLayout())) {
+            layoutChanged = true;
+        }
+    }
+
+    /**
+     * settings the running loops were started from: fixed or quick tunnel, the quick tunnels per
+     * transport, their origin and metrics ports
+     *
+     * @return layout
+     */
+    private String tunnelLayout() {
+        return String.join("|", StringUtils.defaultString(appConfig.getArgoToken()),
+                String.valueOf(appConfig.isArgoWsEnabled()), String.valueOf(appConfig.isArgoXhttpEnabled()),
+                appConfig.getArgoXhttpPort(), appConfig.getArgoMetricsPort());
+    }
+
+    @Override
+    protected void stopProcesses() throws InterruptedException {
+        if (!layoutChanged) {
+            super.stopProcesses();
+            return;
+        }
+        // handing the processes over would restart them with the old layout, start over instead
+        layoutChanged = false;
+        generation.incrementAndGet();
+        quickTunnels.clear();
+        resolvedQuickTunnels.clear();
+        super.stopProcesses();
+        log.info("Argo tunnel settings changed, starting the tunnels again");
+        taskExecutor.execute(() -> {
+            try {
+                this.startup();
+            } catch (Exception e) {
+                log.error("Argo startup failed", e);
+            }
+        });
+    }
+
+    @Override
+    protected void installBinary(File binaryPath) throws Exception {
         File destFile = new File(binaryPath, APP_NAME);
         this.download(this.getAppDownloadUrl(), destFile);
         log.info("Argo downloaded successfully");
         this.setExecutePermission(destFile.toPath());
-        log.info("Argo installed successfully");
-        this.updateSubFile();
     }
 
-    @Async
     @Override
     public void startup() throws Exception {
         File appFile = new File(this.getBinaryPath(), APP_NAME);
-        Process process;
+        int current = generation.get();
+        if (StringUtils.isNotBlank(appConfig.getArgoToken())) {
+            this.runFixedTunnel(appFile, current);
+            return;
+        }
+        // a quick tunnel only accepts a single origin, so each transport gets its own tunnel
+        String wsMetricsPort = this.metricsPort(WS_METRICS_OFFSET);
+        if (appConfig.isArgoXhttpEnabled()) {
+            if (appConfig.isArgoWsEnabled()) {
+                quickTunnels.add(wsMetricsPort);
+                taskExecutor.execute(() -> {
+                    try {
+                        this.runQuickTunnel(appFile, WS_ORIGIN_PORT, wsMetricsPort, appConfig::setArgoDomain,
+                                current);
+                    } catch (Exception e) {
+                        log.error("Argo ws tunnel failed", e);
+                    }
+                });
+            }
+            String xhttpMetricsPort = this.metricsPort(XHTTP_METRICS_OFFSET);
+            quickTunnels.add(xhttpMetricsPort);
+            this.runQuickTunnel(appFile, appConfig.getArgoXhttpPort(), xhttpMetricsPort,
+                    appConfig::setArgoXhttpDomain, current);
+        } else {
+            quickTunnels.add(wsMetricsPort);
+            this.runQuickTunnel(appFile, WS_ORIGIN_PORT, wsMetricsPort, appConfig::setArgoDomain, current);
+        }
+    }
+
+    /**
+     * metrics ports are taken from argo-metrics-port upwards: ws or fixed tunnel, xhttp, upgrade overlap
+     *
+     * @param offset offset from argo-metrics-port
+     * @return metrics port
+     */
+    private String metricsPort(int offset) {
+        return String.valueOf(Integer.parseInt(appConfig.getArgoMetricsPort()) + offset);
+    }
+
+    @Override
+    public boolean isReady() {
+        if (StringUtils.isNotBlank(appConfig.getArgoToken())) {
+            return ListenProbe.isHttpOk(String.format(READY_URL, this.metricsPort(WS_METRICS_OFFSET)));
+        }
+        // quick tunnels are ready once their host is known and an edge connection is registered
+        if (quickTunnels.isEmpty() || !resolvedQuickTunnels.containsAll(quickTunnels)) {
+            return false;
+        }
+        return quickTunnels.stream()
+                .allMatch(metricsPort -> ListenProbe.isHttpOk(String.format(READY_URL, metricsPort)));
+    }
+
+    private void runQuickTunnel(File appFile, String originPort, String metricsPort,
+                                Consumer<String> domainSetter, int current) throws Exception {
         while (true) {
-            if (StringUtils.isBlank(appConfig.getArgoToken())) {
-                log.info("Starting Argo...");
-                ProcessBuilder pb = new ProcessBuilder(appFile.getAbsolutePath(), "tunnel", "--no-autoupdate",
-                        "--edge-ip-version", "auto", "--protocol", "http2", "--url", "http://localhost:8001");
-                pb.redirectErrorStream(true);
-                process = pb.start();
-                AtomicBoolean stopLogging = new AtomicBoolean(false);
-                try (
-                        InputStream is = process.getInputStream();
-                        InputStreamReader isReader = new InputStreamReader(is);
-                        BufferedReader reader = new BufferedReader(isReader)
-                ) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        if (stopLogging.get()) {
-                            continue;
-                        }
-                        Matcher matcher = QUICK_TUNNEL_HOST_PATTERN.matcher(line);
-                        String lastMatch = null;
-                        while (matcher.find()) {
-                            lastMatch = matcher.group();
-                        }
-                        if (lastMatch != null) {
-                            stopLogging.set(true);
-                            String argoDomain = new URL(lastMatch).getHost();
-                            appConfig.setArgoDomain(argoDomain);
-                            // update application.yml config
-                            updateSpringConfig();
-                            log.info("Spring application.yml config updated successfully");
-                            updateSubFile();
-                            log.info("✅ Startup completed. You can view node details at: {}", NODE_FILE_PATH);
-                        }
+            log.info("Starting Argo...");
+            ProcessBuilder pb = new ProcessBuilder(appFile.getAbsolutePath(), "tunnel", "--no-autoupdate",
+                    "--edge-ip-version", "auto", "--protocol", "http2", "--metrics", "127.0.0.1:" + metricsPort,
+                    "--url", "http://localhost:" + originPort);
+            pb.redirectErrorStream(true);
+            Process process = this.spawn(pb);
+            AtomicBoolean stopLogging = new AtomicBoolean(false);
+            try (
+                    InputStream is = process.getInputStream();
+                    InputStreamReader isReader = new InputStreamReader(is);
+                    BufferedReader reader = new BufferedReader(isReader)
+            ) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (stopLogging.get()) {
+                        continue;
+                    }
+                    String lastMatch = findQuickTunnelUrl(line);
+                    // a tunnel of an older layout must not count for the current one
+                    if (lastMatch != null && current == generation.get()) {
+                        stopLogging.set(true);
+                        String argoDomain = new URL(lastMatch).getHost();
+                        this.onQuickTunnelResolved(argoDomain, domainSetter);
+                        resolvedQuickTunnels.add(metricsPort);
                     }
                 }
-            } else {
-                updateSubFile();
-                log.info("✅ Startup completed. You can view node details at: {}", NODE_FILE_PATH);
-                ProcessBuilder pb = new ProcessBuilder(appFile.getAbsolutePath(), "tunnel", "--no-autoupdate",
-                        "--edge-ip-version", "auto", "--protocol", "http2", "run", "--token", appConfig.getArgoToken());
-                pb.redirectOutput(new File("/dev/null"));
-                pb.redirectError(new File("/dev/null"));
-                log.info("Starting Argo...");
-                process = pb.start();
             }
-            int exitCode = process.waitFor();
-            if (exitCode == 0) {
-                log.info("Argo process exited with code: {}", exitCode);
+            if (!this.awaitRestart(process) || current != generation.get()) {
                 break;
-            } else {
-                log.info("Argo process exited with code: {}, restarting...", exitCode);
-                TimeUnit.SECONDS.sleep(3);
             }
         }
     }
 
+    private void onQuickTunnelResolved(String argoDomain, Consumer<String> domainSetter) throws Exception {
+        // not the service lock, restart and upgrade hold that while they wait for the tunnels to resolve
+        synchronized (resolveLock) {
+            domainSetter.accept(argoDomain);
+            // update application.yml config
+            updateSpringConfig();
+            log.info("Spring application.yml config updated successfully");
+            updateSubFile();
+            log.info("Node details updated: {}", NODE_FILE_PATH);
+        }
+    }
+
+    private void runFixedTunnel(File appFile, int current) throws Exception {
+        updateSubFile();
+        log.info("Node details updated: {}", NODE_FILE_PATH);
+        if (appConfig.isArgoXhttpEnabled()) {
+            log.info("Route path {} of the Argo tunnel to http://localhost:{} for xhttp",
+                    appConfig.getArgoXhttpPath(), appConfig.getArgoXhttpPort());
+        }
+        while (true) {
+            ProcessBuilder pb = this.fixedTunnelCommand(appFile, this.metricsPort(WS_METRICS_OFFSET));
+            log.info("Starting Argo...");
+            Process process = this.spawn(pb);
+            if (!this.awaitRestart(process) || current != generation.get()) {
+                break;
+            }
+        }
+    }
+
+    private ProcessBuilder fixedTunnelCommand(File appFile, String metricsPort) {
+        ProcessBuilder pb = new ProcessBuilder(appFile.getAbsolutePath(), "tunnel", "--no-autoupdate",
+                "--edge-ip-version", "auto", "--protocol", "http2", "--metrics", "127.0.0.1:" + metricsPort,
+                "run", "--token", appConfig.getArgoToken());
+        pb.redirectOutput(new File("/dev/null"));
+        pb.redirectError(new File("/dev/null"));
+        return pb;
+    }
+
+    @Override
+    protected Overlap overlap(File appFile) {
+        // connectors of a named tunnel can serve side by side, a quick tunnel gets a new host on every start
+        if (StringUtils.isBlank(appConfig.getArgoToken())) {
+            return null;
+        }
+        String metricsPort = this.metricsPort(OVERLAP_METRICS_OFFSET);
+        return new Overlap(this.fixedTunnelCommand(appFile, metricsPort),
+                () -> ListenProbe.isHttpOk(String.format(READY_URL, metricsPort)));
+    }
+
+    static String findQuickTunnelUrl(String line) {
+        Matcher matcher = QUICK_TUNNEL_HOST_PATTERN.matcher(line);
+        String lastMatch = null;
+        while (matcher.find()) {
+            lastMatch = matcher.group();
+        }
+        return lastMatch;
+    }
+
     private void updateSubFile() throws IOException {
+        Files.write(NODE_FILE_PATH, this.buildSubInfoList());
+    }
+
+    List<String> buildSubInfoList() {
         List<String> subInfoList = new ArrayList<>();
-        String wsUrl = String.format(WS_URL, appConfig.getUuid(),
-                appConfig.getArgoDomain(), appConfig.getArgoDomain(), appConfig.getRemarksPrefix());
-        subInfoList.add(wsUrl);
+        if (appConfig.isArgoWsEnabled()) {
+            String wsUrl = String.format(WS_URL, appConfig.getUuid(),
+                    appConfig.getArgoDomain(), appConfig.getArgoDomain(), appConfig.getRemarksPrefix());
+            subInfoList.add(wsUrl);
+        }
+        if (appConfig.isArgoXhttpEnabled()) {
+            String xhttpDomain = appConfig.getArgoXhttpDomain();
+            String extra = String.format(XHTTP_EXTRA, appConfig.getArgoXhttpPadding());
+            String xhttpUrl = String.format(XHTTP_URL, appConfig.getUuid(), xhttpDomain, xhttpDomain, xhttpDomain,
+                    URLEncoder.encode(appConfig.getArgoXhttpPath(), StandardCharsets.UTF_8),
+                    appConfig.getArgoXhttpMode(), URLEncoder.encode(extra, StandardCharsets.UTF_8),
+                    appConfig.getRemarksPrefix());
+            subInfoList.add(xhttpUrl);
+        }
         String realityUrl = String.format(REALITY_URL, appConfig.getUuid(), appConfig.getDomain(), appConfig.getPort(),
                 appConfig.getRealityPublicKey(), appConfig.getRealityShortId(), appConfig.getRemarksPrefix());
         subInfoList.add(realityUrl);
         String hy2Url = String.format(HY2_URL, appConfig.getUuid(), appConfig.getDomain(), appConfig.getPort(),
                 appConfig.getRemarksPrefix());
         subInfoList.add(hy2Url);
-        Files.write(NODE_FILE_PATH, subInfoList);
+        return subInfoList;
+    }
+
+    public Path getNodeFilePath() {
+        return NODE_FILE_PATH;
     }
 
     @Override
@@ -2,18 +2,15 @@ package com.github.vevc.service.impl;
 
 import com.github.vevc.config.AppConfig;
 import com.github.vevc.service.AbstractAppService;
+import com.github.vevc.util.ListenProbe;
+import com.github.vevc.util.StartupTimeline;
 import com.github.vevc.util.TlsCertGenerator;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.InputStream;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
-import java.util.concurrent.TimeUnit;
 
 /**
  * @author vevc
@@ -37,23 +34,34 @@ public class Hy2ServiceImpl extends AbstractAppService {
         return String.format(APP_DOWNLOAD_URL, appConfig.getHy2Version(), arch);
     }
 
+    @Override
+    protected String getAppVersion() {
+        return appConfig.getHy2Version();
+    }
+
+    @Override
+    protected String[] getVersionArgs() {
+        return new String[]{"version"};
+    }
+
     @Override
     public void install() throws Exception {
         // if hy2 exists, skip install
         if (new File(this.getBinaryPath(), APP_NAME).exists()) {
             log.info("Hy2 already exists, skip install");
+            this.checkInstalledVersion();
             return;
         }
 
         File binaryPath = this.initBinaryPath();
-        File destFile = new File(binaryPath, APP_NAME);
-        this.download(this.getAppDownloadUrl(), destFile);
-        log.info("Hy2 downloaded successfully");
-        this.setExecutePermission(destFile.toPath());
+        this.installBinary(binaryPath);
+        this.recordVersion(binaryPath);
         log.info("Hy2 installed successfully");
 
         // generate tls cert
-        TlsCertGenerator.generate(appConfig.getDomain(), 3650, 2048, binaryPath);
+        try (StartupTimeline.Phase ignored = this.phase("rsa")) {
+            TlsCertGenerator.generate(appConfig.getDomain(), 3650, 2048, binaryPath);
+        }
         log.info("Hy2 TLS cert generated successfully");
 
         // download config
@@ -61,21 +69,41 @@ public class Hy2ServiceImpl extends AbstractAppService {
         log.info("Hy2 config downloaded successfully");
     }
 
+    @Override
+    protected void installBinary(File binaryPath) throws Exception {
+        File destFile = new File(binaryPath, APP_NAME);
+        this.download(this.getAppDownloadUrl(), destFile);
+        log.info("Hy2 downloaded successfully");
+        this.setExecutePermission(destFile.toPath());
+    }
+
     private void downloadConfig(File configPath) throws Exception {
-        String content;
-        try (InputStream in = new URL(APP_CONFIG_URL).openStream()) {
-            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
-        }
+        String content = this.fetchConfig(APP_CONFIG_URL);
 
-        String configText = content.replace("10008", appConfig.getPort())
-                .replace("CERT_FILE_PATH", configPath.getAbsolutePath())
-                .replace("HY2_PASSWORD", appConfig.getUuid());
+        String configText = this.renderConfig(content, configPath);
         File configFile = new File(configPath, APP_CONFIG_NAME);
         Files.writeString(configFile.toPath(), configText,
                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
     }
 
-    @Async
+    @Override
+    public void updateConfig() throws Exception {
+        this.downloadConfig(this.getBinaryPath());
+    }
+
+    @Override
+    public void applyConfig(AppConfig saved) {
+        appConfig.setHy2Version(saved.getHy2Version());
+        appConfig.setPort(saved.getPort());
+        appConfig.setUuid(saved.getUuid());
+    }
+
+    String renderConfig(String content, File configPath) {
+        return content.replace("10008", appConfig.getPort())
+                .replace("CERT_FILE_PATH", configPath.getAbsolutePath())
+                .replace("HY2_PASSWORD", appConfig.getUuid());
+    }
+
     @Override
     public void startup() throws Exception {
         File binaryPath = this.getBinaryPath();
@@ -87,17 +115,19 @@ public class Hy2ServiceImpl extends AbstractAppService {
             pb.redirectOutput(new File("/dev/null"));
             pb.redirectError(new File("/dev/null"));
             log.info("Starting Hy2...");
-            int exitCode = this.startProcess(pb);
-            if (exitCode == 0) {
-                log.info("Hy2 process exited with code: {}", exitCode);
+            Process process = this.spawn(pb);
+            this.drainOutput(process.getInputStream());
+            if (!this.awaitRestart(process)) {
                 break;
-            } else {
-                log.info("Hy2 process exited with code: {}, restarting...", exitCode);
-                TimeUnit.SECONDS.sleep(3);
             }
         }
     }
 
+    @Override
+    public boolean isReady() {
+        return ListenProbe.isUdpBound(Integer.parseInt(appConfig.getPort()));
+    }
+
     @Override
     protected String getAppName() {
         return APP_NAME;
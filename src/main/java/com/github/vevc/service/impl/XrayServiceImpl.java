@@ -1,12 +1,17 @@
 package com.github.vevc.service.impl;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.vevc.config.AppConfig;
 import com.github.vevc.service.AbstractAppService;
+import com.github.vevc.util.ListenProbe;
+import com.github.vevc.util.StartupTimeline;
 import lombok.extern.slf4j.Slf4j;
 import net.lingala.zip4j.ZipFile;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
@@ -14,12 +19,10 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 /**
  * @author vevc
@@ -34,6 +37,9 @@ public class XrayServiceImpl extends AbstractAppService {
     private static final String APP_DOWNLOAD_URL = "https://github.com/XTLS/Xray-core/releases/download/v%s/Xray-linux-%s.zip";
     private static final String APP_CONFIG_URL = "https://raw.githubusercontent.com/vevc/java-xah/refs/heads/main/xray-config.json";
 
+    private static final int WS_ARGO_PORT = 8001;
+    private static final String XHTTP_NETWORK = "xhttp";
+
     private static final String REALITY_PRIVATE_KEY_PREFIX = "PrivateKey: ";
     private static final String REALITY_PUBLIC_KEY_PREFIX = "Password: ";
 
@@ -47,19 +53,47 @@ public class XrayServiceImpl extends AbstractAppService {
         return String.format(APP_DOWNLOAD_URL, appConfig.getXrayVersion(), arch);
     }
 
+    @Override
+    protected String getAppVersion() {
+        return appConfig.getXrayVersion();
+    }
+
+    @Override
+    protected String[] getVersionArgs() {
+        return new String[]{"version"};
+    }
+
     @Override
     public void install() throws Exception {
         // if xray exists, skip install
         if (new File(this.getBinaryPath(), APP_NAME).exists()) {
             log.info("Xray already exists, skip install");
+            this.checkInstalledVersion();
             return;
         }
 
         File binaryPath = this.initBinaryPath();
+        this.installBinary(binaryPath);
+        this.recordVersion(binaryPath);
+        log.info("Xray installed successfully");
+
+        // download config
+        this.downloadConfig(binaryPath);
+        log.info("Xray config downloaded successfully");
+
+        // update application.yml config
+        this.updateSpringConfig();
+        log.info("Spring application.yml config updated successfully");
+    }
+
+    @Override
+    protected void installBinary(File binaryPath) throws Exception {
         File targetFile = new File(binaryPath, APP_ARCHIVE_NAME);
         this.download(this.getAppDownloadUrl(), targetFile);
         log.info("Xray archive downloaded successfully");
-        try (ZipFile zipFile = new ZipFile(targetFile)) {
+        try (StartupTimeline.Phase phase = this.phase("unzip");
+             ZipFile zipFile = new ZipFile(targetFile)) {
+            phase.setBytes(targetFile.length());
             zipFile.extractAll(binaryPath.getAbsolutePath());
         }
         log.info("Xray archive extracted successfully");
@@ -70,34 +104,147 @@ public class XrayServiceImpl extends AbstractAppService {
         File destFile = new File(binaryPath, APP_NAME);
         FileUtils.moveFile(srcFile, destFile);
         this.setExecutePermission(destFile.toPath());
-        log.info("Xray installed successfully");
-
-        // download config
-        this.downloadConfig(binaryPath);
-        log.info("Xray config downloaded successfully");
+    }
 
-        // update application.yml config
-        this.updateSpringConfig();
-        log.info("Spring application.yml config updated successfully");
+    @Override
+    protected void validateBinary(File appFile) throws Exception {
+        super.validateBinary(appFile);
+        // the staged core must accept the config the running one was started with
+        File configFile = new File(this.getBinaryPath(), APP_CONFIG_NAME);
+        this.runCommand(appFile.getAbsolutePath(), "run", "-test", "-c", configFile.getAbsolutePath());
     }
 
     private void downloadConfig(File binaryPath) throws Exception {
-        String content;
-        try (InputStream in = new URL(APP_CONFIG_URL).openStream()) {
-            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        try (StartupTimeline.Phase ignored = this.phase("x25519")) {
+            this.generateRealityKeys(new File(binaryPath, APP_NAME));
         }
-
-        this.generateRealityKeys(new File(binaryPath, APP_NAME));
         String shortId = UUID.randomUUID().toString().substring(0, 8);
         appConfig.setRealityShortId(shortId);
+        this.writeConfig(binaryPath);
+    }
+
+    private void writeConfig(File binaryPath) throws Exception {
+        String content = this.fetchConfig(APP_CONFIG_URL);
+        String configText = this.renderConfig(content);
+        File configFile = new File(binaryPath, APP_CONFIG_NAME);
+        Files.writeString(configFile.toPath(), configText,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void updateConfig() throws Exception {
+        // keeps the reality keys of the install
+        this.writeConfig(this.getBinaryPath());
+    }
+
+    @Override
+    public void applyConfig(AppConfig saved) {
+        appConfig.setXrayVersion(saved.getXrayVersion());
+        appConfig.setPort(saved.getPort());
+        appConfig.setUuid(saved.getUuid());
+        appConfig.setArgoTransport(saved.getArgoTransport());
+        appConfig.setArgoXhttpPort(saved.getArgoXhttpPort());
+        appConfig.setArgoXhttpPath(saved.getArgoXhttpPath());
+        appConfig.setArgoXhttpMode(saved.getArgoXhttpMode());
+        appConfig.setArgoXhttpPadding(saved.getArgoXhttpPadding());
+    }
 
+    String renderConfig(String content) throws Exception {
         String configText = content.replace("10008", appConfig.getPort())
                 .replace("YOUR_UUID", appConfig.getUuid())
                 .replace("YOUR_PRIVATE_KEY", appConfig.getRealityPrivateKey())
-                .replace("YOUR_SHORT_ID", shortId);
-        File configFile = new File(binaryPath, APP_CONFIG_NAME);
-        Files.writeString(configFile.toPath(), configText,
+                .replace("YOUR_SHORT_ID", appConfig.getRealityShortId());
+        return this.applyArgoTransports(configText);
+    }
+
+    /**
+     * make the argo inbounds match argo-transport: every selected transport gets its own local
+     * port, the others are dropped. Idempotent, so it also applies to an installed config.
+     *
+     * @param configText rendered config template or installed config
+     * @return config text
+     * @throws Exception e
+     */
+    String applyArgoTransports(String configText) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode root = (ObjectNode) objectMapper.readTree(configText);
+        ArrayNode inbounds = (ArrayNode) root.get("inbounds");
+        boolean hasWsInbound = false;
+        Iterator<JsonNode> iterator = inbounds.elements();
+        while (iterator.hasNext()) {
+            JsonNode inbound = iterator.next();
+            if (inbound.path("port").asInt() == WS_ARGO_PORT) {
+                hasWsInbound = true;
+                if (!appConfig.isArgoWsEnabled()) {
+                    iterator.remove();
+                }
+            } else if (XHTTP_NETWORK.equals(inbound.path("streamSettings").path("network").asText())) {
+                // re-added below with the current xhttp settings
+                iterator.remove();
+            }
+        }
+        if (appConfig.isArgoWsEnabled() && !hasWsInbound) {
+            this.addWsInbound(inbounds);
+        }
+        if (appConfig.isArgoXhttpEnabled()) {
+            this.addXhttpInbound(inbounds);
+        }
+        return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+    }
+
+    /**
+     * bring an installed config in line with argo-transport, install is skipped once xray exists
+     *
+     * @param configFile installed config
+     * @throws Exception e
+     */
+    private void syncArgoTransports(File configFile) throws Exception {
+        String configText = Files.readString(configFile.toPath());
+        String synced = this.applyArgoTransports(configText);
+        ObjectMapper objectMapper = new ObjectMapper();
+        if (objectMapper.readTree(configText).equals(objectMapper.readTree(synced))) {
+            return;
+        }
+        Files.writeString(configFile.toPath(), synced,
                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        log.info("Xray config updated for argo-transport: {}", appConfig.getArgoTransport());
+    }
+
+    private void addWsInbound(ArrayNode inbounds) {
+        ObjectNode inbound = inbounds.insertObject(0);
+        inbound.putNull("listen");
+        inbound.put("port", WS_ARGO_PORT);
+        inbound.put("protocol", "vless");
+        ObjectNode settings = inbound.putObject("settings");
+        settings.put("decryption", "none");
+        ObjectNode client = settings.putArray("clients").addObject();
+        client.put("id", appConfig.getUuid());
+        client.put("flow", "");
+        client.put("email", "ws-argo");
+        ObjectNode streamSettings = inbound.putObject("streamSettings");
+        streamSettings.put("network", "ws");
+        streamSettings.put("security", "none");
+        ObjectNode wsSettings = streamSettings.putObject("wsSettings");
+        wsSettings.put("host", "");
+        wsSettings.put("path", "/");
+    }
+
+    private void addXhttpInbound(ArrayNode inbounds) {
+        ObjectNode inbound = inbounds.addObject();
+        inbound.put("port", Integer.parseInt(appConfig.getArgoXhttpPort()));
+        inbound.put("protocol", "vless");
+        ObjectNode settings = inbound.putObject("settings");
+        settings.put("decryption", "none");
+        ObjectNode client = settings.putArray("clients").addObject();
+        client.put("id", appConfig.getUuid());
+        client.put("email", "xhttp-argo");
+        ObjectNode streamSettings = inbound.putObject("streamSettings");
+        streamSettings.put("network", XHTTP_NETWORK);
+        streamSettings.put("security", "none");
+        ObjectNode xhttpSettings = streamSettings.putObject("xhttpSettings");
+        xhttpSettings.put("path", appConfig.getArgoXhttpPath());
+        xhttpSettings.put("mode", appConfig.getArgoXhttpMode());
+        xhttpSettings.put("xPaddingBytes", appConfig.getArgoXhttpPadding());
     }
 
     private void generateRealityKeys(File binaryFile) throws Exception {
@@ -125,29 +272,38 @@ public class XrayServiceImpl extends AbstractAppService {
         Assert.isTrue(exitCode == 0, "Failed to generate reality keys");
     }
 
-    @Async
     @Override
     public void startup() throws Exception {
         File binaryPath = this.getBinaryPath();
         File appFile = new File(binaryPath, APP_NAME);
         File configFile = new File(binaryPath, APP_CONFIG_NAME);
+        this.syncArgoTransports(configFile);
         while (true) {
             ProcessBuilder pb = new ProcessBuilder(appFile.getAbsolutePath(),
                     "-c", configFile.getAbsolutePath());
             pb.redirectOutput(new File("/dev/null"));
             pb.redirectError(new File("/dev/null"));
             log.info("Starting Xray...");
-            int exitCode = this.startProcess(pb);
-            if (exitCode == 0) {
-                log.info("Xray process exited with code: {}", exitCode);
+            Process process = this.spawn(pb);
+            this.drainOutput(process.getInputStream());
+            if (!this.awaitRestart(process)) {
                 break;
-            } else {
-                log.info("Xray process exited with code: {}, restarting...", exitCode);
-                TimeUnit.SECONDS.sleep(3);
             }
         }
     }
 
+    @Override
+    public boolean isReady() {
+        if (!ListenProbe.isTcpListening(Integer.parseInt(appConfig.getPort()))) {
+            return false;
+        }
+        if (appConfig.isArgoWsEnabled() && !ListenProbe.isTcpListening(WS_ARGO_PORT)) {
+            return false;
+        }
+        return !appConfig.isArgoXhttpEnabled()
+                || ListenProbe.isTcpListening(Integer.parseInt(appConfig.getArgoXhttpPort()));
+    }
+
     @Override
     protected String getAppName() {
         return APP_NAME;
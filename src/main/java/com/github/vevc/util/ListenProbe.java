@@ -0,0 +1,132 @@
+package com.github.vevc.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * @author vevc
+ */
+@UtilityClass
+public class ListenProbe {
+
+    private static final Path PROC_NET = Paths.get("/proc/net");
+    private static final String TCP_LISTEN = "0A";
+    private static final int PROBE_TIMEOUT_MILLIS = 200;
+
+    /**
+     * Checks whether a TCP socket is listening on the given local port.
+     *
+     * @param port local port
+     * @return true if listening
+     */
+    public boolean isTcpListening(int port) {
+        Boolean listening = findInProcNet(PROC_NET, port, TCP_LISTEN, "tcp", "tcp6");
+        if (listening != null) {
+            return listening;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), PROBE_TIMEOUT_MILLIS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether a UDP socket is bound to the given local port.
+     *
+     * @param port local port
+     * @return true if bound
+     */
+    public boolean isUdpBound(int port) {
+        Boolean bound = findInProcNet(PROC_NET, port, null, "udp", "udp6");
+        if (bound != null) {
+            return bound;
+        }
+        return probeUdp(port);
+    }
+
+    /**
+     * Probes a local UDP port without binding it. Best effort: where ICMP errors are not
+     * reported back to the socket a closed port also stays silent and counts as bound.
+     *
+     * @param port local port
+     * @return true unless the port is reported unreachable
+     */
+    boolean probeUdp(int port) {
+        // never bind the port itself, that could take it from the app starting up: an empty
+        // datagram to a closed port comes back as ICMP port unreachable, an open port stays silent
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.connect(InetAddress.getLoopbackAddress(), port);
+            socket.setSoTimeout(PROBE_TIMEOUT_MILLIS);
+            socket.send(new DatagramPacket(new byte[0], 0));
+            socket.receive(new DatagramPacket(new byte[1], 1));
+            return true;
+        } catch (PortUnreachableException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Checks whether an HTTP endpoint answers with 200.
+     *
+     * @param url endpoint url
+     * @return true if the endpoint answered 200
+     */
+    public boolean isHttpOk(String url) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(PROBE_TIMEOUT_MILLIS);
+            connection.setReadTimeout(PROBE_TIMEOUT_MILLIS);
+            return connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Scans /proc/net tables for a socket bound to the port.
+     *
+     * @param procNet /proc/net directory
+     * @param port    local port
+     * @param state   required socket state in hex, or null for any state
+     * @param tables  table names under /proc/net
+     * @return match result, or null if no table could be read
+     */
+    Boolean findInProcNet(Path procNet, int port, String state, String... tables) {
+        String portHex = String.format(":%04X", port);
+        boolean readable = false;
+        for (String table : tables) {
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(procNet.resolve(table), StandardCharsets.US_ASCII);
+            } catch (IOException e) {
+                continue;
+            }
+            readable = true;
+            // skip header: sl local_address rem_address st ...
+            for (int i = 1; i < lines.size(); i++) {
+                String[] fields = lines.get(i).trim().split("\\s+");
+                if (fields.length > 3 && fields[1].endsWith(portHex)
+                        && (state == null || state.equals(fields[3]))) {
+                    return true;
+                }
+            }
+        }
+        return readable ? Boolean.FALSE : null;
+    }
+}
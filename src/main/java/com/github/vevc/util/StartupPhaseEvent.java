@@ -0,0 +1,25 @@
+package com.github.vevc.util;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for one startup phase, the phase duration is the event duration.
+ *
+ * @author vevc
+ */
+@Name("com.github.vevc.StartupPhase")
+@Label("Startup Phase")
+@Category({"java-xah", "Startup"})
+@StackTrace(false)
+public class StartupPhaseEvent extends Event {
+
+    @Label("Service")
+    String service;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
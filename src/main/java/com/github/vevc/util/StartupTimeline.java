@@ -0,0 +1,156 @@
+package com.github.vevc.util;
+
+import jdk.jfr.Recording;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects startup phases as JFR events and keeps an in-memory copy for the timeline summary.
+ * The JFR event class is only touched while a recording can use it, its initialization
+ * costs a few hundred milliseconds on a cold start.
+ *
+ * @author vevc
+ */
+@Slf4j
+@UtilityClass
+public class StartupTimeline {
+
+    private static final long ORIGIN;
+    private static final List<Phase> PHASES = new CopyOnWriteArrayList<>();
+    private static volatile boolean summarized;
+    private static volatile boolean eventsEnabled;
+    private static Recording recording;
+
+    static {
+        // offsets are relative to JVM start, not to the first use of this class
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        long sinceJvmStart = System.currentTimeMillis() - runtime.getStartTime();
+        ORIGIN = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(sinceJvmStart);
+        eventsEnabled = runtime.getInputArguments().stream()
+                .anyMatch(argument -> argument.startsWith("-XX:StartFlightRecording"));
+    }
+
+    /**
+     * Begins a phase, close it to end the phase.
+     *
+     * @param service service name
+     * @param phase   phase name
+     * @return phase
+     */
+    public Phase begin(String service, String phase) {
+        return new Phase(service, phase);
+    }
+
+    /**
+     * Starts a JFR recording of the startup phase events.
+     *
+     * @param destination the file the recording is written to when stopped
+     * @throws IOException if the destination is not writable
+     */
+    public synchronized void startRecording(Path destination) throws IOException {
+        if (recording != null) {
+            return;
+        }
+        eventsEnabled = true;
+        recording = new Recording();
+        recording.setName("java-xah-startup");
+        recording.enable(StartupPhaseEvent.class);
+        recording.setDestination(destination);
+        recording.start();
+        log.info("JFR startup recording started, writing to {}", destination);
+    }
+
+    /**
+     * Stops the JFR recording, which writes it to its destination.
+     */
+    public synchronized void stopRecording() {
+        if (recording == null) {
+            return;
+        }
+        recording.stop();
+        recording.close();
+        recording = null;
+    }
+
+    /**
+     * Logs all finished phases ordered by start time, later phases are only emitted as JFR events.
+     */
+    public void printSummary() {
+        summarized = true;
+        List<Phase> phases = new ArrayList<>(PHASES);
+        phases.sort(Comparator.comparingLong(phase -> phase.startedAt));
+        StringBuilder summary = new StringBuilder("Startup timeline:");
+        for (Phase phase : phases) {
+            summary.append(String.format("%n  +%6d ms  %-5s %-20s %6d ms", millis(ORIGIN, phase.startedAt),
+                    phase.service, phase.phase, millis(phase.startedAt, phase.endedAt)));
+            if (phase.bytes > 0) {
+                summary.append("  ").append(FileUtils.byteCountToDisplaySize(phase.bytes));
+            }
+        }
+        log.info(summary.toString());
+    }
+
+    private static long millis(long from, long to) {
+        return TimeUnit.NANOSECONDS.toMillis(to - from);
+    }
+
+    public static class Phase implements AutoCloseable {
+        private final String service;
+        private final String phase;
+        private final long startedAt;
+        private final StartupPhaseEvent event;
+        private long endedAt;
+        private long bytes;
+
+        private Phase(String service, String phase) {
+            this.startedAt = System.nanoTime();
+            this.service = service;
+            this.phase = phase;
+            this.event = eventsEnabled ? newEvent() : null;
+        }
+
+        private static StartupPhaseEvent newEvent() {
+            StartupPhaseEvent event = new StartupPhaseEvent();
+            if (!event.isEnabled()) {
+                return null;
+            }
+            event.begin();
+            return event;
+        }
+
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (endedAt != 0) {
+                return;
+            }
+            endedAt = System.nanoTime();
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.service = service;
+                    event.phase = phase;
+                    event.bytes = bytes;
+                    event.commit();
+                }
+            }
+            if (!summarized) {
+                PHASES.add(this);
+            }
+        }
+    }
+}
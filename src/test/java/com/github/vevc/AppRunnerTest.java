@@ -0,0 +1,27 @@
+package com.github.vevc;
+
+import com.github.vevc.config.AppConfig;
+import com.github.vevc.service.AppService;
+import com.github.vevc.service.ControlServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketException;
+
+import static org.mockito.Mockito.*;
+
+class AppRunnerTest {
+
+    @Test
+    void startsTheAppsWhenTheControlSocketCannotBeBound() throws Exception {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setShellEnabled(false);
+        AppService appService = mock(AppService.class);
+        ControlServer controlServer = mock(ControlServer.class);
+        doThrow(new SocketException("Unix domain path too long")).when(controlServer).start();
+
+        new AppRunner(appConfig, appService, controlServer).run();
+
+        verify(appService).install();
+        verify(appService).startup();
+    }
+}
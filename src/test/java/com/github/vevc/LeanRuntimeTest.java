@@ -0,0 +1,186 @@
+package com.github.vevc;
+
+import com.github.vevc.config.AppConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots the real supervisor in lean runtime mode with the JVM flags from the README against fake
+ * cores, then reports its steady-state RSS.
+ */
+@EnabledOnOs(OS.LINUX)
+class LeanRuntimeTest {
+
+    static final List<String> LEAN_JVM_OPTIONS = List.of("-XX:+UseSerialGC", "-Xms8m", "-Xmx32m",
+            "-XX:MaxMetaspaceSize=64m", "-XX:ReservedCodeCacheSize=16m", "-XX:TieredStopAtLevel=1",
+            "-Xss256k", "-XX:MaxDirectMemorySize=4m", "-XX:-UsePerfData");
+    /**
+     * RSS depends on the JDK build, its CDS archive and the kernel, so a limit is only checked when
+     * one is given; 63~68 MB were measured on a full JDK 17, where libjvm, CDS and the code cache
+     * alone take ~35 MB
+     */
+    private static final String RSS_LIMIT_PROPERTY = "lean.rss.limit-mb";
+
+    @TempDir
+    Path workDir;
+
+    @Test
+    void steadyStateRss() throws Exception {
+        int[] ports = freePorts(3);
+        int port = ports[0];
+        int xhttpPort = ports[1];
+        int metricsPort = ports[2];
+        // installed cores are skipped by install(), the fakes only bind what the readiness gates probe;
+        // the xhttp transport keeps the fixed ws origin port 8001 out of the test
+        AppConfig defaults = new AppConfig();
+        defaults.init();
+        writeFakeCore("xy", defaults.getXrayVersion(), "tcp:" + port, "tcp:" + xhttpPort);
+        writeFakeCore("h2", defaults.getHy2Version(), "udp:" + port);
+        writeFakeCore("cf", defaults.getArgoVersion(), "argo");
+        FileUtils.writeStringToFile(workDir.resolve("bin/xy/config.json").toFile(), "{\"inbounds\": []}",
+                StandardCharsets.UTF_8);
+        // lean mode reads its config from ./application.yml only
+        FileUtils.writeStringToFile(workDir.resolve("application.yml").toFile(), String.format(
+                "app:%n  port: '%d'%n  argo-transport: xhttp%n  argo-xhttp-port: '%d'%n  argo-metrics-port: '%d'%n",
+                port, xhttpPort, metricsPort - 1), StandardCharsets.UTF_8);
+
+        List<String> command = new ArrayList<>();
+        command.add(javaBinary());
+        command.addAll(LEAN_JVM_OPTIONS);
+        command.addAll(List.of("-Dapp.lean=true", "-cp", System.getProperty("java.class.path"),
+                JavaXahApplication.class.getName()));
+        Process process = new ProcessBuilder(command).directory(workDir.toFile()).redirectErrorStream(true).start();
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            Thread drain = new Thread(() -> {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.contains("Startup completed")) {
+                            started.countDown();
+                        }
+                    }
+                } catch (Exception ignored) {
+                    // process destroyed
+                }
+            });
+            drain.setDaemon(true);
+            drain.start();
+            assertTrue(started.await(120, TimeUnit.SECONDS), "supervisor did not complete startup");
+
+            // let the startup garbage settle before sampling
+            TimeUnit.SECONDS.sleep(5);
+            long rssKb = readStatusKb(process.pid(), "VmRSS:");
+            long hwmKb = readStatusKb(process.pid(), "VmHWM:");
+            System.out.printf("Lean supervisor steady-state RSS: %.1f MB (peak %.1f MB)%n",
+                    rssKb / 1024.0, hwmKb / 1024.0);
+            Long limitMb = Long.getLong(RSS_LIMIT_PROPERTY);
+            if (limitMb != null) {
+                assertTrue(rssKb < limitMb * 1024, "steady-state RSS " + rssKb + " kB over " + limitMb + " MB");
+            }
+        } finally {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * ports that are free right now, held together so that they differ
+     */
+    private static int[] freePorts(int count) throws Exception {
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            int[] ports = new int[count];
+            for (int i = 0; i < count; i++) {
+                ServerSocket socket = new ServerSocket(0);
+                sockets.add(socket);
+                ports[i] = socket.getLocalPort();
+            }
+            return ports;
+        } finally {
+            for (ServerSocket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    private void writeFakeCore(String appName, String version, String... binds) throws Exception {
+        File binary = workDir.resolve("bin").resolve(appName).resolve(appName).toFile();
+        // the supervisor's arguments follow "--", the fake argo core reads its metrics address from them
+        String script = String.format("#!/bin/sh%nexec '%s' -Xmx8m -XX:TieredStopAtLevel=1 -cp '%s' '%s' %s -- \"$@\"%n",
+                javaBinary(), System.getProperty("java.class.path"), FakeCore.class.getName(), String.join(" ", binds));
+        FileUtils.writeStringToFile(binary, script, StandardCharsets.UTF_8);
+        assertTrue(binary.setExecutable(true));
+        // recorded like an install of the configured version, the fakes do not answer a version query
+        FileUtils.writeStringToFile(new File(binary.getParentFile(), ".version"), version, StandardCharsets.UTF_8);
+    }
+
+    private static String javaBinary() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static long readStatusKb(long pid, String field) throws Exception {
+        for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(pid), "status"))) {
+            if (line.startsWith(field)) {
+                return Long.parseLong(line.substring(field.length()).trim().split("\\s+")[0]);
+            }
+        }
+        throw new IllegalStateException(field + " not found for pid " + pid);
+    }
+
+    /**
+     * Stand-in core: binds tcp/udp ports, or serves cloudflared's /ready on its --metrics address
+     * and prints a quick tunnel url.
+     */
+    static class FakeCore {
+
+        public static void main(String[] args) throws Exception {
+            List<String> command = List.of(args);
+            int separator = command.indexOf("--");
+            List<AutoCloseable> sockets = new ArrayList<>();
+            for (String bind : command.subList(0, separator)) {
+                String[] parts = bind.split(":");
+                switch (parts[0]) {
+                    case "tcp" -> sockets.add(new ServerSocket(Integer.parseInt(parts[1])));
+                    case "udp" -> sockets.add(new DatagramSocket(Integer.parseInt(parts[1])));
+                    case "argo" -> {
+                        String metrics = command.get(command.indexOf("--metrics") + 1);
+                        int port = Integer.parseInt(metrics.substring(metrics.lastIndexOf(':') + 1));
+                        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+                        server.createContext("/ready", exchange -> {
+                            exchange.sendResponseHeaders(200, -1);
+                            exchange.close();
+                        });
+                        server.start();
+                        System.out.println("INF |  https://lean-runtime-test.trycloudflare.com  |");
+                    }
+                    default -> throw new IllegalArgumentException(bind);
+                }
+            }
+            System.out.flush();
+            Thread.sleep(Long.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.vevc.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppConfigTest {
+
+    @Test
+    void acceptsKnownTransports() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setArgoTransport(" ws , XHTTP ");
+        appConfig.init();
+        assertTrue(appConfig.isArgoWsEnabled());
+        assertTrue(appConfig.isArgoXhttpEnabled());
+    }
+
+    @Test
+    void rejectsUnknownTransport() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setArgoTransport("ws,grpc");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, appConfig::init);
+        assertTrue(e.getMessage().contains("grpc"));
+    }
+}
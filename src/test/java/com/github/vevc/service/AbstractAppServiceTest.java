@@ -0,0 +1,299 @@
+package com.github.vevc.service;
+
+import com.github.vevc.config.AppConfig;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Upgrade, rollback and restart decisions of the supervisor loop against fake cores: shell
+ * scripts that print their version and otherwise sleep, recording their pid once "ready".
+ */
+@EnabledOnOs(OS.LINUX)
+class AbstractAppServiceTest {
+
+    @TempDir
+    Path workDir;
+
+    private FakeService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new FakeService(workDir.resolve("bin").resolve(FakeService.APP_NAME).toFile(), "1.0");
+        service.readyWindow = Duration.ofSeconds(5);
+        service.install();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stopped = true;
+        service.getPids().forEach(pid -> ProcessHandle.of(pid).ifPresent(ProcessHandle::destroyForcibly));
+    }
+
+    @Test
+    void upgradeSwitchesTheRunningCoreToTheStagedVersion() throws Exception {
+        this.startAndAwaitReady();
+        List<Long> pids = service.getPids();
+        service.version = "2.0";
+        service.checkInstalledVersion();
+        assertTrue(service.isUpgradePending());
+
+        assertTrue(service.upgrade());
+
+        assertEquals("2.0", this.installedVersion());
+        assertEquals("2.0", this.binaryVersion());
+        assertFalse(service.isUpgradePending());
+        assertFalse(new File(service.getBinaryPath(), FakeService.APP_NAME + ".prev").exists());
+        assertNotEquals(pids, service.getPids());
+        assertEquals(0, service.getRestarts());
+    }
+
+    @Test
+    void upgradeRollsBackWhenTheNewVersionIsNotReady() throws Exception {
+        this.startAndAwaitReady();
+        service.version = "2.0";
+        service.brokenVersions.add("2.0");
+        service.checkInstalledVersion();
+
+        assertFalse(service.upgrade());
+
+        assertEquals("1.0", this.installedVersion());
+        assertEquals("1.0", this.binaryVersion());
+        assertTrue(service.isUpgradePending());
+        assertTrue(service.isReady());
+    }
+
+    @Test
+    void upgradeBeforeStartupSwitchesWithoutAHandover() throws Exception {
+        service.version = "2.0";
+        service.checkInstalledVersion();
+
+        service.upgradeBeforeStartup();
+        // nothing runs yet, the version is only recorded once the new binary is ready
+        assertEquals("2.0", this.binaryVersion());
+        assertEquals("1.0", this.installedVersion());
+        assertTrue(service.getPids().isEmpty());
+
+        this.startAndAwaitReady();
+        List<Long> pids = service.getPids();
+        assertTrue(service.confirmUpgrade());
+
+        assertEquals("2.0", this.installedVersion());
+        assertFalse(service.isUpgradePending());
+        // the core was started once, from the new version
+        assertEquals(pids, service.getPids());
+    }
+
+    @Test
+    void confirmUpgradeRollsBackWhenTheNewVersionIsNotReady() throws Exception {
+        service.version = "2.0";
+        service.brokenVersions.add("2.0");
+        service.checkInstalledVersion();
+        service.upgradeBeforeStartup();
+        this.start();
+
+        assertFalse(service.confirmUpgrade());
+
+        assertEquals("1.0", this.binaryVersion());
+        assertEquals("1.0", this.installedVersion());
+        assertTrue(service.isReady());
+    }
+
+    @Test
+    void installWithoutVersionFileIsAskedForItsVersion() throws Exception {
+        // installed before versions were recorded, the config already names the next version
+        Files.delete(new File(service.getBinaryPath(), ".version").toPath());
+        service.version = "2.0";
+
+        service.checkInstalledVersion();
+
+        assertEquals("1.0", this.installedVersion());
+        assertEquals("1.0", service.getInstalledVersion());
+        assertTrue(service.isUpgradePending());
+    }
+
+    @Test
+    void installWithoutVersionFileFallsBackToTheConfiguredVersion() throws Exception {
+        Files.delete(new File(service.getBinaryPath(), ".version").toPath());
+        FileUtils.writeStringToFile(new File(service.getBinaryPath(), FakeService.APP_NAME),
+                "#!/bin/sh\necho 'no version here'\n", StandardCharsets.UTF_8);
+
+        service.checkInstalledVersion();
+
+        assertEquals("1.0", this.installedVersion());
+        assertFalse(service.isUpgradePending());
+    }
+
+    @Test
+    void installThatIgnoresTheVersionArgsIsNotWaitedFor() throws Exception {
+        Files.delete(new File(service.getBinaryPath(), ".version").toPath());
+        FileUtils.writeStringToFile(new File(service.getBinaryPath(), FakeService.APP_NAME),
+                "#!/bin/sh\nexec sleep 600\n", StandardCharsets.UTF_8);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(15), service::checkInstalledVersion);
+
+        assertEquals("1.0", this.installedVersion());
+        assertFalse(service.isUpgradePending());
+    }
+
+    @Test
+    void handedOverProcessRestartsAtOnceWithoutCountingAFailure() throws Exception {
+        this.startAndAwaitReady();
+        List<Long> pids = service.getPids();
+
+        long begin = System.nanoTime();
+        assertTrue(service.restart());
+
+        assertTrue(System.nanoTime() - begin < TimeUnit.SECONDS.toNanos(3), "handover waited for the failure delay");
+        assertNotEquals(pids, service.getPids());
+        assertEquals(0, service.getRestarts());
+    }
+
+    @Test
+    void failedProcessRestartsAfterADelay() throws Exception {
+        Process process = service.spawn(new ProcessBuilder("sh", "-c", "exit 3"));
+
+        long begin = System.nanoTime();
+        assertTrue(service.awaitRestart(process));
+
+        assertTrue(System.nanoTime() - begin >= TimeUnit.SECONDS.toNanos(3));
+        assertEquals(1, service.getRestarts());
+        assertTrue(service.getPids().isEmpty());
+    }
+
+    @Test
+    void cleanExitEndsTheLoop() throws Exception {
+        Process process = service.spawn(new ProcessBuilder("true"));
+
+        assertFalse(service.awaitRestart(process));
+        assertEquals(0, service.getRestarts());
+    }
+
+    private void start() {
+        Thread loop = new Thread(() -> {
+            try {
+                service.startup();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, "fake-core");
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    private void startAndAwaitReady() throws Exception {
+        this.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!service.isReady()) {
+            assertTrue(System.nanoTime() < deadline, "fake core not ready");
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+
+    private String installedVersion() throws Exception {
+        return Files.readString(new File(service.getBinaryPath(), ".version").toPath()).trim();
+    }
+
+    private String binaryVersion() throws Exception {
+        return service.runCommand(new File(service.getBinaryPath(), FakeService.APP_NAME).getAbsolutePath(), "version")
+                .trim();
+    }
+
+    private static class FakeService extends AbstractAppService {
+        private static final String APP_NAME = "fake";
+
+        private final File binaryPath;
+        private final File readyFile;
+        private final Set<String> brokenVersions = ConcurrentHashMap.newKeySet();
+        private volatile String version;
+        private volatile boolean stopped;
+
+        private FakeService(File binaryPath, String version) {
+            super(new AppConfig());
+            this.binaryPath = binaryPath;
+            this.readyFile = new File(binaryPath.getParentFile(), "ready");
+            this.version = version;
+        }
+
+        @Override
+        protected String getAppDownloadUrl() {
+            return null;
+        }
+
+        @Override
+        protected String getAppVersion() {
+            return version;
+        }
+
+        @Override
+        protected void installBinary(File binaryPath) throws Exception {
+            // a broken version starts but never becomes ready
+            String ready = brokenVersions.contains(version) ? "" : "echo $$ > '" + readyFile + "'\n";
+            File binary = new File(binaryPath, APP_NAME);
+            FileUtils.writeStringToFile(binary, String.format("#!/bin/sh%n"
+                    + "if [ \"$1\" = version ]; then echo '%s'; exit 0; fi%n"
+                    + "%sexec sleep 600%n", version, ready), StandardCharsets.UTF_8);
+            this.setExecutePermission(binary.toPath());
+        }
+
+        @Override
+        protected String[] getVersionArgs() {
+            return new String[]{"version"};
+        }
+
+        @Override
+        protected void install() throws Exception {
+            File binaryPath = this.initBinaryPath();
+            this.installBinary(binaryPath);
+            this.recordVersion(binaryPath);
+        }
+
+        @Override
+        protected void startup() throws Exception {
+            File appFile = new File(this.getBinaryPath(), APP_NAME);
+            while (!stopped) {
+                Process process = this.spawn(new ProcessBuilder(appFile.getAbsolutePath()));
+                if (!this.awaitRestart(process)) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        protected boolean isReady() {
+            // ready while the process that recorded itself is alive, like a bound port
+            try {
+                long pid = Long.parseLong(Files.readString(readyFile.toPath()).trim());
+                return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        @Override
+        protected File getBinaryPath() {
+            return binaryPath;
+        }
+
+        @Override
+        protected String getAppName() {
+            return APP_NAME;
+        }
+    }
+}
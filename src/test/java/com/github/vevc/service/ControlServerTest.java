@@ -0,0 +1,107 @@
+package com.github.vevc.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.github.vevc.config.AppConfig;
+import com.github.vevc.service.impl.ArgoServiceImpl;
+import com.github.vevc.service.impl.Hy2ServiceImpl;
+import com.github.vevc.service.impl.XrayServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ControlServerTest {
+
+    @TempDir
+    Path workDir;
+
+    private AppConfig appConfig;
+    private ControlServer controlServer;
+
+    @BeforeEach
+    void setUp() {
+        appConfig = new AppConfig();
+        appConfig.setControlSocket(workDir.resolve("control.sock").toString());
+        appConfig.init();
+        controlServer = new ControlServer(appConfig, new ArgoServiceImpl(appConfig, Runnable::run),
+                new XrayServiceImpl(appConfig), new Hy2ServiceImpl(appConfig));
+    }
+
+    @Test
+    void helpIsTheDefaultCommand() {
+        assertTrue(controlServer.handle("").contains("restart <app>"));
+        assertEquals(controlServer.handle(""), controlServer.handle("help"));
+    }
+
+    @Test
+    void rejectsUnknownCommands() {
+        String response = controlServer.handle("stop xray");
+        assertTrue(response.startsWith(ControlServer.ERROR_PREFIX + "unknown command stop"), response);
+    }
+
+    @Test
+    void restartAndReloadNeedAKnownApp() {
+        assertEquals(ControlServer.ERROR_PREFIX + "restart needs an app: xray, hy2 or argo\n",
+                controlServer.handle("restart"));
+        assertEquals(ControlServer.ERROR_PREFIX + "unknown app nginx\n", controlServer.handle("reload nginx"));
+    }
+
+    @Test
+    void changesLogLevels() {
+        String name = "com.github.vevc.control-test";
+        assertEquals(name + " set to DEBUG\n", controlServer.handle("log-level debug " + name));
+        assertEquals(Level.DEBUG, ((Logger) LoggerFactory.getLogger(name)).getLevel());
+
+        assertEquals(ControlServer.ERROR_PREFIX + "log-level needs a level\n", controlServer.handle("log-level"));
+        assertEquals(ControlServer.ERROR_PREFIX + "unknown level loud\n", controlServer.handle("log-level loud"));
+    }
+
+    @Test
+    void statusAndMetricsAnswerFromTheLastReadinessRefresh() {
+        String status = controlServer.handle("status");
+        assertEquals(3, status.lines().count(), status);
+        // nothing installed and nothing probed yet
+        assertTrue(status.lines().allMatch(line -> line.contains(" -  ") && line.contains("not-ready")), status);
+
+        controlServer.refreshReadiness();
+        String metrics = controlServer.handle("metrics");
+        assertTrue(metrics.contains("jvm.heap.used.bytes "), metrics);
+        assertTrue(metrics.contains("app.xray.ready 0\n"), metrics);
+        assertTrue(metrics.contains("app.argo.processes 0\n"), metrics);
+    }
+
+    @Test
+    void failsToStartOnASocketPathOverTheUnixLimit() {
+        appConfig.setControlSocket(workDir.resolve("x".repeat(120) + ".sock").toString());
+        assertThrows(IOException.class, controlServer::start);
+    }
+
+    @Test
+    void servesOneCommandPerConnectionOnTheSocket() throws Exception {
+        controlServer.start();
+        Path socketPath = ControlServer.getSocketPath(appConfig);
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(socketPath));
+
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            channel.write(ByteBuffer.wrap("restart\n".getBytes(StandardCharsets.UTF_8)));
+            try (InputStream in = Channels.newInputStream(channel)) {
+                assertEquals(ControlServer.ERROR_PREFIX + "restart needs an app: xray, hy2 or argo\n",
+                        new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.vevc.service;
+
+import com.github.vevc.config.AppConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StartupGraphTest {
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    @Test
+    void startsDependentsOnlyOnceTheirDependenciesAreReady() throws Exception {
+        StubService xray = new StubService("Xray");
+        StubService hy2 = new StubService("Hy2");
+        StubService argo = new StubService("Argo");
+        // xray becomes ready a few polls after it was started
+        xray.ready = () -> xray.polls++ >= 3;
+
+        boolean ready = new StartupGraph(Runnable::run)
+                .node("Xray", xray)
+                .node("Hy2", hy2)
+                .node("Argo", argo, "Xray")
+                .run(Duration.ofSeconds(5));
+
+        assertTrue(ready);
+        // independent nodes start together, argo waits for xray
+        assertEquals(List.of("Xray started", "Hy2 started"), events.subList(0, 2));
+        assertTrue(events.indexOf("Argo started") > events.indexOf("Xray ready"), events.toString());
+    }
+
+    @Test
+    void startsPendingNodesAndReportsFailureOnTimeout() throws Exception {
+        StubService xray = new StubService("Xray");
+        StubService argo = new StubService("Argo");
+        xray.ready = () -> false;
+
+        boolean ready = new StartupGraph(Runnable::run)
+                .node("Xray", xray)
+                .node("Argo", argo, "Xray")
+                .run(Duration.ofMillis(200));
+
+        assertFalse(ready);
+        // a dependency that never gets ready must not keep the dependent down for good
+        assertEquals(List.of("Xray started", "Argo started"), events);
+    }
+
+    @Test
+    void rejectsDependenciesThatWereNotAddedBefore() {
+        StartupGraph graph = new StartupGraph(Runnable::run);
+        StubService argo = new StubService("Argo");
+        assertThrows(IllegalArgumentException.class, () -> graph.node("Argo", argo, "Xray"));
+    }
+
+    private class StubService extends AbstractAppService {
+        private final String name;
+        private volatile BooleanSupplier ready = () -> true;
+        private int polls;
+
+        private StubService(String name) {
+            super(new AppConfig());
+            this.name = name;
+        }
+
+        @Override
+        protected void startup() {
+            events.add(name + " started");
+        }
+
+        @Override
+        protected boolean isReady() {
+            boolean isReady = ready.getAsBoolean();
+            if (isReady) {
+                events.add(name + " ready");
+            }
+            return isReady;
+        }
+
+        @Override
+        protected String getAppName() {
+            return name.toLowerCase();
+        }
+
+        @Override
+        protected String getAppDownloadUrl() {
+            return null;
+        }
+
+        @Override
+        protected String getAppVersion() {
+            return "1.0";
+        }
+
+        @Override
+        protected void installBinary(File binaryPath) {
+        }
+
+        @Override
+        protected String[] getVersionArgs() {
+            return new String[0];
+        }
+
+        @Override
+        protected void install() {
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.vevc.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vevc.config.AppConfig;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XrayServiceImplTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final AppConfig appConfig = new AppConfig();
+    private final XrayServiceImpl xrayService = new XrayServiceImpl(appConfig);
+
+    private String template() throws Exception {
+        appConfig.init();
+        appConfig.setRealityPrivateKey("private-key");
+        appConfig.setRealityShortId("6ba85179");
+        return Files.readString(Paths.get("xray-config.json"), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> networks(String config) throws Exception {
+        List<String> networks = new ArrayList<>();
+        for (JsonNode inbound : OBJECT_MAPPER.readTree(config).get("inbounds")) {
+            networks.add(inbound.path("port").asText() + "/" + inbound.path("streamSettings").path("network").asText());
+        }
+        return networks;
+    }
+
+    @Test
+    void rendersSelectedTransports() throws Exception {
+        appConfig.setArgoTransport("xhttp");
+        String config = xrayService.renderConfig(template());
+        assertEquals(List.of("10008/raw", "8002/xhttp"), networks(config));
+    }
+
+    @Test
+    void installedConfigFollowsTransportChanges() throws Exception {
+        String installed = xrayService.renderConfig(template());
+        assertEquals(List.of("8001/ws", "10008/raw"), networks(installed));
+
+        appConfig.setArgoTransport("ws,xhttp");
+        appConfig.setArgoXhttpPort("8003");
+        String both = xrayService.applyArgoTransports(installed);
+        assertEquals(List.of("8001/ws", "10008/raw", "8003/xhttp"), networks(both));
+        assertEquals(OBJECT_MAPPER.readTree(both), OBJECT_MAPPER.readTree(xrayService.applyArgoTransports(both)));
+
+        appConfig.setArgoTransport("xhttp");
+        String xhttpOnly = xrayService.applyArgoTransports(both);
+        assertEquals(List.of("10008/raw", "8003/xhttp"), networks(xhttpOnly));
+
+        appConfig.setArgoTransport("ws");
+        assertEquals(List.of("8001/ws", "10008/raw"), networks(xrayService.applyArgoTransports(xhttpOnly)));
+    }
+}
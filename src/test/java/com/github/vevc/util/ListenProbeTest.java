@@ -0,0 +1,70 @@
+package com.github.vevc.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.DatagramSocket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListenProbeTest {
+
+    private static final String TCP_LISTEN = "0A";
+
+    private final Path procNet = fixture();
+
+    private static Path fixture() {
+        try {
+            return Paths.get(ListenProbeTest.class.getResource("proc-net").toURI());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void findsListeningTcpPortByHexLocalPort() {
+        assertEquals(Boolean.TRUE, ListenProbe.findInProcNet(procNet, 8001, TCP_LISTEN, "tcp", "tcp6"));
+        assertEquals(Boolean.TRUE, ListenProbe.findInProcNet(procNet, 20257, TCP_LISTEN, "tcp", "tcp6"));
+    }
+
+    @Test
+    void findsListeningTcp6Port() {
+        assertEquals(Boolean.TRUE, ListenProbe.findInProcNet(procNet, 25205, TCP_LISTEN, "tcp", "tcp6"));
+    }
+
+    @Test
+    void ignoresOtherStatesAndRemotePorts() {
+        // established and time-wait rows of the local port, 8002 only appears as a remote port
+        assertEquals(Boolean.FALSE, ListenProbe.findInProcNet(procNet, 40000, TCP_LISTEN, "tcp", "tcp6"));
+        assertEquals(Boolean.FALSE, ListenProbe.findInProcNet(procNet, 50000, TCP_LISTEN, "tcp", "tcp6"));
+        assertEquals(Boolean.FALSE, ListenProbe.findInProcNet(procNet, 8002, TCP_LISTEN, "tcp", "tcp6"));
+    }
+
+    @Test
+    void findsBoundUdpPortInAnyState() {
+        assertEquals(Boolean.TRUE, ListenProbe.findInProcNet(procNet, 25205, null, "udp", "udp6"));
+        assertEquals(Boolean.FALSE, ListenProbe.findInProcNet(procNet, 8001, null, "udp", "udp6"));
+    }
+
+    @Test
+    void unknownWithoutReadableTables(@TempDir Path empty) {
+        assertNull(ListenProbe.findInProcNet(empty, 8001, TCP_LISTEN, "tcp", "tcp6"));
+    }
+
+    @Test
+    void udpProbeDoesNotTakeThePort() throws Exception {
+        int port;
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            port = socket.getLocalPort();
+            assertTrue(ListenProbe.probeUdp(port));
+        }
+        // a closed port is only reported where ICMP errors reach the socket, either way
+        // the probe must leave the port free for the app
+        ListenProbe.probeUdp(port);
+        try (DatagramSocket ignored = new DatagramSocket(port)) {
+            assertFalse(ignored.isClosed());
+        }
+    }
+}